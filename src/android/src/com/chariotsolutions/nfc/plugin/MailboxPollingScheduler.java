@@ -0,0 +1,276 @@
+package com.chariotsolutions.nfc.plugin;
+
+import com.iotize.android.core.util.Helper;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Schedules MB_CTRL_DYN polling according to the response latencies previously observed.
+ * <p>
+ * Latencies are learned per tag UID and per request size class with a smoothed mean / mean deviation
+ * estimator (same approach as the TCP retransmission timer).
+ * Polling is dense around the predicted completion time and falls back to exponential backoff
+ * past the tail of the distribution, or when nothing has been learned yet.
+ */
+public class MailboxPollingScheduler {
+
+    private static final int MAX_TAG_PROFILES = 256;
+    /**
+     * Request sizes are grouped by power of two: 0, 1, 2-3, 4-7, ..., 1024 and more
+     */
+    private static final int SIZE_CLASS_COUNT = 12;
+    private static final long MIN_POLLING_DELAY = 5;      // in ms
+    private static final long MAX_DENSE_POLLING_DELAY = 20; // in ms
+    /**
+     * Tail of the distribution is estimated to mean + TAIL_FACTOR * deviation
+     */
+    private static final int TAIL_FACTOR = 4;
+
+    private final Map<String, LatencyStats[]> profiles = new LinkedHashMap<String, LatencyStats[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LatencyStats[]> eldest) {
+            return size() > MAX_TAG_PROFILES;
+        }
+    };
+
+    private final AtomicLong exchangeCount = new AtomicLong();
+    private final AtomicLong coldExchangeCount = new AtomicLong();
+    private final AtomicLong pollCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong earlyHitCount = new AtomicLong();
+    private final AtomicLong predictedHitCount = new AtomicLong();
+    private final AtomicLong tailHitCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    /**
+     * Latency distribution estimator for one tag and one request size class
+     */
+    public static class LatencyStats {
+        private double mean;
+        private double deviation;
+        private int sampleCount;
+
+        public synchronized void addSample(long latency) {
+            if (sampleCount == 0) {
+                mean = latency;
+                deviation = latency / 2.0;
+            } else {
+                double error = latency - mean;
+                mean += error / 8;
+                deviation += (Math.abs(error) - deviation) / 4;
+            }
+            sampleCount++;
+        }
+
+        synchronized void restore(double mean, double deviation, int sampleCount) {
+            this.mean = mean;
+            this.deviation = deviation;
+            this.sampleCount = sampleCount;
+        }
+
+        public synchronized boolean hasSamples() {
+            return sampleCount > 0;
+        }
+
+        public synchronized long getMean() {
+            return Math.round(mean);
+        }
+
+        public synchronized long getDeviation() {
+            return Math.round(deviation);
+        }
+
+        public synchronized int getSampleCount() {
+            return sampleCount;
+        }
+
+        synchronized long getWindowStart() {
+            return Math.max(0, Math.round(mean - deviation));
+        }
+
+        synchronized long getWindowEnd() {
+            return Math.round(mean + TAIL_FACTOR * deviation);
+        }
+    }
+
+    @NonNull
+    public LatencyStats getStats(@NonNull byte[] tagId, int requestSize) {
+        return getStats(Helper.ByteArrayToHexString(tagId), requestSize);
+    }
+
+    /**
+     * @param key tag UID as hexadecimal string
+     */
+    @NonNull
+    public LatencyStats getStats(@NonNull String key, int requestSize) {
+        synchronized (profiles) {
+            LatencyStats[] tagStats = profiles.get(key);
+            if (tagStats == null) {
+                tagStats = new LatencyStats[SIZE_CLASS_COUNT];
+                profiles.put(key, tagStats);
+            }
+            int sizeClass = getSizeClass(requestSize);
+            if (tagStats[sizeClass] == null) {
+                tagStats[sizeClass] = new LatencyStats();
+            }
+            return tagStats[sizeClass];
+        }
+    }
+
+    /**
+     * Export learned latencies of a tag
+     *
+     * @return array of [sizeClass, mean, deviation, sampleCount]
+     */
+    @NonNull
+    public JSONArray exportLatencies(@NonNull byte[] tagId) throws JSONException {
+        JSONArray json = new JSONArray();
+        LatencyStats[] tagStats;
+        synchronized (profiles) {
+            tagStats = profiles.get(Helper.ByteArrayToHexString(tagId));
+        }
+        if (tagStats != null) {
+            for (int sizeClass = 0; sizeClass < tagStats.length; sizeClass++) {
+                LatencyStats stats = tagStats[sizeClass];
+                if (stats != null && stats.hasSamples()) {
+                    synchronized (stats) {
+                        JSONArray item = new JSONArray();
+                        item.put(sizeClass);
+                        item.put(stats.mean);
+                        item.put(stats.deviation);
+                        item.put(stats.sampleCount);
+                        json.put(item);
+                    }
+                }
+            }
+        }
+        return json;
+    }
+
+    /**
+     * Import latencies previously exported with {@link #exportLatencies(byte[])}.
+     * Size classes that already have samples are not modified.
+     */
+    public void importLatencies(@NonNull byte[] tagId, @NonNull JSONArray latencies) {
+        for (int i = 0; i < latencies.length(); i++) {
+            JSONArray item = latencies.optJSONArray(i);
+            if (item == null || item.length() < 4) {
+                continue;
+            }
+            int sizeClass = item.optInt(0, -1);
+            if (sizeClass < 0 || sizeClass >= SIZE_CLASS_COUNT) {
+                continue;
+            }
+            LatencyStats stats = getStats(tagId, sizeClass == 0 ? 0 : 1 << (sizeClass - 1));
+            synchronized (stats) {
+                if (!stats.hasSamples()) {
+                    stats.restore(item.optDouble(1, 0), item.optDouble(2, 0), item.optInt(3, 0));
+                }
+            }
+        }
+    }
+
+    static int getSizeClass(int requestSize) {
+        return Math.min(SIZE_CLASS_COUNT - 1, 32 - Integer.numberOfLeadingZeros(Math.max(0, requestSize)));
+    }
+
+    /**
+     * Compute the delay before the first MB_CTRL_DYN poll: start of the predicted window,
+     * which may be earlier than the default delay
+     *
+     * @param stats        latency stats of the current exchange
+     * @param elapsed      time elapsed since the request has been written, in ms
+     * @param defaultDelay delay of the first poll after the write when nothing has been learned, in ms
+     * @return delay in ms
+     */
+    public long getInitialPollingDelay(@NonNull LatencyStats stats, long elapsed, long defaultDelay) {
+        if (!stats.hasSamples()) {
+            return Math.max(0, defaultDelay - elapsed);
+        }
+        return Math.max(0, stats.getWindowStart() - elapsed);
+    }
+
+    /**
+     * Compute the delay before the next MB_CTRL_DYN poll
+     *
+     * @param stats         latency stats of the current exchange
+     * @param elapsed       time elapsed since the request has been written, in ms
+     * @param previousDelay previous polling delay, 0 before the first poll
+     * @param backoffDelay  initial backoff delay, used when nothing has been learned
+     * @return delay in ms
+     */
+    public long getNextPollingDelay(@NonNull LatencyStats stats, long elapsed, long previousDelay, long backoffDelay) {
+        if (!stats.hasSamples()) {
+            return previousDelay == 0 ? backoffDelay : previousDelay * 2;
+        }
+        long windowStart = stats.getWindowStart();
+        long windowEnd = stats.getWindowEnd();
+        if (elapsed < windowStart) {
+            return Math.max(MIN_POLLING_DELAY, windowStart - elapsed);
+        }
+        long denseDelay = Math.min(MAX_DENSE_POLLING_DELAY, Math.max(MIN_POLLING_DELAY, stats.getDeviation() / 2));
+        if (elapsed < windowEnd) {
+            return Math.min(denseDelay, Math.max(MIN_POLLING_DELAY, windowEnd - elapsed));
+        }
+        return Math.max(denseDelay, previousDelay * 2);
+    }
+
+    public void onExchangeStarted(@NonNull LatencyStats stats) {
+        exchangeCount.incrementAndGet();
+        if (!stats.hasSamples()) {
+            coldExchangeCount.incrementAndGet();
+        }
+    }
+
+    public void onPoll(boolean hit) {
+        pollCount.incrementAndGet();
+        if (!hit) {
+            missCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record the latency of a response and learn from it
+     */
+    public void onResponse(@NonNull LatencyStats stats, long latency) {
+        if (stats.hasSamples()) {
+            if (latency < stats.getWindowStart()) {
+                earlyHitCount.incrementAndGet();
+            } else if (latency <= stats.getWindowEnd()) {
+                predictedHitCount.incrementAndGet();
+            } else {
+                tailHitCount.incrementAndGet();
+            }
+        }
+        stats.addSample(latency);
+    }
+
+    public void onTimeout() {
+        timeoutCount.incrementAndGet();
+    }
+
+    @NonNull
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("exchanges", exchangeCount.get());
+        json.put("coldExchanges", coldExchangeCount.get());
+        json.put("polls", pollCount.get());
+        json.put("misses", missCount.get());
+        json.put("earlyHits", earlyHitCount.get());
+        json.put("predictedHits", predictedHitCount.get());
+        json.put("tailHits", tailHitCount.get());
+        json.put("timeouts", timeoutCount.get());
+        synchronized (profiles) {
+            json.put("tagProfiles", profiles.size());
+        }
+        return json;
+    }
+}
@@ -7,6 +7,7 @@ import com.iotize.android.core.util.SynchronizeHelper;
 import com.iotize.android.communication.client.impl.protocol.HostProtocol;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  *
@@ -14,11 +15,30 @@ import java.io.IOException;
 public class NFC4Protocol extends NFCProtocol {
 
     private static final long DEFAULT_READ_TIMEOUT = 2000;
-    private final IsoDep nfcTag;
+    /**
+     * SELECT command of the LwM2M application, without the expected status word
+     */
+    private static final byte[] LWM2M_SELECT_COMMAND = Arrays.copyOf(LWM2M_CARD_AID_BYTES, LWM2M_CARD_AID_BYTES.length - 2);
+    private IsoDep nfcTag;
     private byte[] lastMessage;
 
     public NFC4Protocol(Tag tag) {
+        this(tag, IsoDep.get(tag));
+    }
+
+    NFC4Protocol(Tag tag, IsoDep nfcTag) {
         super(tag);
+        this.nfcTag = nfcTag;
+    }
+
+    @Override
+    public void rebind(Tag tag) {
+        super.rebind(tag);
+        try {
+            nfcTag.close();
+        } catch (IOException e) {
+            // Tag of the previous discovery is out of date
+        }
         nfcTag = IsoDep.get(tag);
     }
 
@@ -35,6 +55,24 @@ public class NFC4Protocol extends NFCProtocol {
         nfcTag.close();
     }
 
+    /**
+     * Presence check: select the LwM2M application again, the Tap answers it whatever its state.
+     * Must not be run during an exchange.
+     *
+     * @return true if the tag has answered
+     */
+    public boolean probe() {
+        if (!nfcTag.isConnected()) {
+            return false;
+        }
+        try {
+            nfcTag.transceive(LWM2M_SELECT_COMMAND);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
     @Override
     public void write(byte[] message) throws Exception {
         byte[] payload = nfcTag.transceive(message);
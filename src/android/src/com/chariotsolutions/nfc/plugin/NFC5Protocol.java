@@ -3,6 +3,7 @@ package com.chariotsolutions.nfc.plugin;
 import android.nfc.Tag;
 import android.nfc.TagLostException;
 import android.nfc.tech.NfcV;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.iotize.android.communication.protocol.nfc.EHCtrlDyn;
@@ -13,7 +14,12 @@ import com.iotize.android.communication.client.impl.protocol.ConnectionState;
 import com.iotize.android.communication.client.impl.protocol.HostProtocol;
 import com.iotize.android.communication.client.impl.protocol.exception.TimeOutException;
 
+import org.json.JSONException;
+
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -56,31 +62,214 @@ public class NFC5Protocol extends NFCProtocol {
     public static final byte ISO15693_CUSTOM_ST_CMD_FAST_READ_DYN_CONFIG = (byte) 0xCD;
     public static final byte ISO15693_CUSTOM_ST_CMD_FAST_WRITE_DYN_CONFIG = (byte) 0xCE;
 
+    /**
+     * READ_MB_MSG number of bytes value to read the whole message from the given pointer
+     */
+    public static final byte READ_MB_MSG_ALL = (byte) 0x00;
+
+    /*ISO15693 error codes*/
+    public static final byte ISO15693_ERROR_CMD_NOT_SUPPORTED = (byte) 0x01;
+    public static final byte ISO15693_ERROR_CMD_NOT_RECOGNIZED = (byte) 0x02;
+
+    /*ISO15693 response flag*/
+    private static final int ISO15693_RESPONSE_FLAG_ERROR = 0x01;
+
+    /*MB_CTRL_Dyn register bits*/
+    private static final int MB_CTRL_DYN_MB_EN = 0x01;
+    private static final int MB_CTRL_DYN_HOST_PUT_MSG = 0x02;
+    private static final int MB_CTRL_DYN_RF_PUT_MSG = 0x04;
+    private static final int MB_CTRL_DYN_HOST_CURRENT_MSG = 0x40;
+    private static final int MB_CTRL_DYN_RF_CURRENT_MSG = 0x80;
+
     public static final byte FLAG_SELECTED_STATE_HR = (byte) 0x12;
     public static final byte FLAG_HIGH_DATA_RATE = (byte) 0x02;
+    public static final byte FLAG_ADDRESSED = (byte) 0x20;
     public static final byte ENABLE_MB = (byte) 0x01;
     public static final byte DISABLE_MB = (byte) 0x00;
 
+    /**
+     * Maximum number of bytes written or read in one mailbox message
+     */
+    public static final int MAILBOX_MAX_MESSAGE_SIZE = 0xFF;
+
+    /**
+     * Segment header (segmented transfer only): bit 7 is set when more segments follow,
+     * bits 0-6 hold the segment sequence number
+     */
+    public static final byte SEGMENT_FLAG_MORE = (byte) 0x80;
+    public static final byte SEGMENT_SEQUENCE_MASK = (byte) 0x7F;
+    protected static final int SEGMENT_HEADER_SIZE = 1;
+    public static final int SEGMENT_MAX_PAYLOAD_SIZE = MAILBOX_MAX_MESSAGE_SIZE - SEGMENT_HEADER_SIZE;
+    private static final int NO_SEGMENT_HEADER = -1;
+
     /*Size of the header in iso 15693 without the UID*/
     protected static final int ISO15693_CUSTOM_ST_HEADER_SIZE = 3;
+    protected static final int ISO15693_UID_SIZE = 8;
+    /*Size of the largest request: addressed WRITE_MB_MSG with a full mailbox message*/
+    private static final int MAX_REQUEST_FRAME_SIZE = ISO15693_CUSTOM_ST_HEADER_SIZE + ISO15693_UID_SIZE + 1 + MAILBOX_MAX_MESSAGE_SIZE;
 
     private static final int DELAY = 50;                            // timeout resolution in ms
     private static final int TIMEOUT_NFC5 = 2000;    // timeout value in ms
     private static final int NB_MAX_RETRY = 3;
     private static final int MAX_CONNECTION_RETRY = 3;
+    private static final int SEGMENT_POLLING_DELAY = 5;              // in ms
+    /**
+     * ST25DV mailbox watchdog with default MB_WDG value (2^(7-1) x 30 ms), in ms.
+     * The mailbox state cannot be trusted after this idle duration.
+     */
+    private static final long MAILBOX_WATCHDOG = 1920;
+    /**
+     * Tag profile is saved every PROFILE_SAVE_INTERVAL successful exchanges
+     */
+    private static final int PROFILE_SAVE_INTERVAL = 20;
+
+    /**
+     * Response latencies are shared by all protocol instances so that they are kept between two taps
+     */
+    private static final MailboxPollingScheduler pollingScheduler = new MailboxPollingScheduler();
+    /**
+     * Frame level trace shared by all protocol instances
+     */
+    private static final NfcTraceBuffer traceBuffer = new NfcTraceBuffer();
 
     @NonNull
     private NfcV nfcTag;
+    /**
+     * Tag UID as hexadecimal string, key of the polling scheduler stats
+     */
+    @NonNull
+    private final String tagKey;
+
+    /**
+     * Request frames reused between exchanges, indexed by command code then frame size (see {@link #requestFrame(byte, byte, int)})
+     */
+    private final byte[][][] requestFrames = new byte[256][][];
+    /**
+     * Size of the request header: flag, command code, manufacturer code and UID in addressed mode
+     */
+    private int headerSize = ISO15693_CUSTOM_ST_HEADER_SIZE;
+    /**
+     * True when requests are sent in addressed mode (see {@link #setAddressedModeEnabled(boolean)})
+     */
+    private boolean addressedModeEnabled = false;
 
     private byte[] lastMessage = null;
     private long responsePollingDelay = 50;
     private long beforePollingDelay = 50;
 
+    /**
+     * True when the fast transfer mode has been selected
+     */
+    private boolean fastTransferEnabled = false;
+    /**
+     * False when the tag has rejected a FAST_* command, or a FAST_* exchange has failed, during this session
+     */
+    private boolean fastCommandsSupported = true;
+    /**
+     * True when messages are split into segments (see {@link #setSegmentedTransferEnabled(boolean)})
+     */
+    private boolean segmentedTransferEnabled = false;
+    /**
+     * True when responses are read with a single READ_MB_MSG command (see {@link #setSingleReadResponseEnabled(boolean)})
+     */
+    private boolean singleReadResponseEnabled = false;
+
+    /**
+     * True when the mailbox is known to be enabled and empty since {@link #mailboxReadyTime}
+     */
+    private boolean mailboxReady = false;
+    private long mailboxReadyTime = 0;
+
+    /**
+     * Deadline and cancellation of the current request, see {@link #setRequestToken(NfcRequestToken)}
+     */
+    @Nullable
+    private volatile NfcRequestToken requestToken;
+
+    @Nullable
+    private TagProfileStore tagProfileStore;
+    @Nullable
+    private TagProfile tagProfile;
+
     public NFC5Protocol(@NonNull Tag tag) {
+        this(tag, NfcV.get(tag));
+    }
+
+    NFC5Protocol(@NonNull Tag tag, @NonNull NfcV nfcTag) {
         super(tag);
+        this.nfcTag = nfcTag;
+        tagKey = Helper.ByteArrayToHexString(tag.getId());
+    }
+
+    /**
+     * The mailbox state is checked again on next exchange
+     */
+    @Override
+    public void rebind(@NonNull Tag tag) {
+        super.rebind(tag);
+        this.closeTag();
         nfcTag = NfcV.get(tag);
     }
 
+    @NonNull
+    public static MailboxPollingScheduler getPollingScheduler() {
+        return pollingScheduler;
+    }
+
+    @NonNull
+    public static NfcTraceBuffer getTraceBuffer() {
+        return traceBuffer;
+    }
+
+    /**
+     * Use a persistent tag profile store.
+     * <p>
+     * The energy harvesting mode and response latencies learned for this tag are restored from the store,
+     * so that a returning tag does not pay the energy harvesting register read and the cold-start polling backoff.
+     *
+     * @param store the store or null to disable profiles
+     */
+    public void setTagProfileStore(@Nullable TagProfileStore store) {
+        this.tagProfileStore = store;
+        this.tagProfile = null;
+        if (store != null) {
+            byte[] tagId = getTag().getId();
+            this.tagProfile = store.get(tagId);
+            this.tagProfile.setNfcVersion(5);
+            pollingScheduler.importLatencies(tagId, this.tagProfile.getLatencies());
+        }
+    }
+
+    @Nullable
+    public TagProfile getTagProfile() {
+        return tagProfile;
+    }
+
+    /**
+     * Set the deadline and cancellation token of the next exchanges, null for none.
+     * Sleeps between frames are cut short and no frame is sent once the token is cancelled or expired.
+     */
+    public void setRequestToken(@Nullable NfcRequestToken token) {
+        this.requestToken = token;
+    }
+
+    @Nullable
+    public NfcRequestToken getRequestToken() {
+        return requestToken;
+    }
+
+    private void saveTagProfile() {
+        if (tagProfileStore == null || tagProfile == null) {
+            return;
+        }
+        try {
+            tagProfile.setLatencies(pollingScheduler.exportLatencies(getTag().getId()));
+        } catch (JSONException e) {
+            Log.w(TAG, "Cannot export tag latencies", e);
+        }
+        tagProfileStore.save(tagProfile);
+    }
+
     @NonNull
     public byte[] tranceiveNFC(@NonNull byte[] command) throws IOException, TimeOutException, InterruptedException {
         return transceiveISO15693(command);
@@ -121,6 +310,8 @@ public class NFC5Protocol extends NFCProtocol {
     }
 
     private void closeTag() {
+        this.invalidateMailboxState();
+        this.saveTagProfile();
         try {
             Log.d(TAG, "Closing tag");
             nfcTag.close();
@@ -133,16 +324,27 @@ public class NFC5Protocol extends NFCProtocol {
     public void write(byte[] message) throws Exception {
         int tryCount = 0;
         do {
+            long startTime = NfcTraceBuffer.now();
+            int traceFlags = tryCount > 0 ? NfcTraceBuffer.FLAG_RETRY : 0;
             try {
                 tryCount++;
-                Log.v(TAG, "Sending (try n° " + tryCount + ") " + message.length + " bytes... 0x" + Helper.ByteArrayToHexString(message));
                 lastMessage = tranceiveNFC(message);
-                Log.d(TAG, "Sent " + message.length + "bytes OK");
+                traceBuffer.record(NfcTraceBuffer.TYPE_EXCHANGE, 0, traceFlags, 0, message.length, lastMessage.length, startTime);
                 return;
             } catch (TagLostException | SecurityException ex) {
+                traceBuffer.record(NfcTraceBuffer.TYPE_EXCHANGE, 0, traceFlags, NfcTraceBuffer.RESULT_TAG_LOST, message.length, 0, startTime);
                 this.disconnectAndNotify();
                 throw new Exception("NFC tag lost (probably NFC tag is not in range anymore)");
+            } catch (CancellationException ex) {
+                traceBuffer.record(NfcTraceBuffer.TYPE_EXCHANGE, 0, traceFlags, NfcTraceBuffer.RESULT_CANCELLED, message.length, 0, startTime);
+                throw ex;
             } catch (TimeOutException ex) {
+                traceBuffer.record(NfcTraceBuffer.TYPE_EXCHANGE, 0, traceFlags, NfcTraceBuffer.RESULT_TIMEOUT, message.length, 0, startTime);
+                NfcRequestToken token = requestToken;
+                if (token != null && token.isDone()) {
+                    // Request deadline is over: tag may still be in range, do not retry
+                    throw ex;
+                }
                 if (tryCount >= NB_MAX_RETRY) {
                     this.disconnectAndNotify();
                     throw ex;
@@ -166,7 +368,6 @@ public class NFC5Protocol extends NFCProtocol {
         if (lastMessage == null) {
             lastMessage = new byte[]{};
         }
-        Log.d(TAG, "Receive: 0x" + Helper.ByteArrayToHexString(lastMessage));
         return lastMessage;
     }
 
@@ -192,85 +393,324 @@ public class NFC5Protocol extends NFCProtocol {
     public EHCtrlDyn readEnergyHarvestingConfig() throws IOException {
         EHCtrlDyn ctrl = new EHCtrlDyn(this.readDynConfig(EH_CTRL_DYN));
         Log.v(TAG, "readEnergyHarvestingConfig => " + ctrl.toString());
-        if (ctrl.hasFlag(EHCtrlDyn.Flags.EH_EN)) {
+        boolean energyHarvestingEnabled = ctrl.hasFlag(EHCtrlDyn.Flags.EH_EN);
+        this.applyEnergyHarvestingMode(energyHarvestingEnabled);
+        if (tagProfile != null) {
+            tagProfile.setEnergyHarvestingEnabled(energyHarvestingEnabled);
+        }
+        return ctrl;
+    }
+
+    private void applyEnergyHarvestingMode(boolean energyHarvestingEnabled) {
+        if (energyHarvestingEnabled) {
             this.beforePollingDelay = 70;
             this.responsePollingDelay = 50;
         } else {
             this.beforePollingDelay = 50;
             this.responsePollingDelay = 50;
         }
-        return ctrl;
     }
 
-    private NfcCtrlResponse transceiveCommand(byte cmd) throws IOException {
-        return transceiveCommand(cmd, null);
+    /**
+     * Select the fast transfer mode.
+     * <p>
+     * When enabled, mailbox and dynamic register commands are sent with the ST25DV FAST_* opcodes
+     * (response sent by the tag at twice the standard data rate).
+     * If the tag rejects a fast command or a fast exchange fails (e.g. the reader cannot decode
+     * the fast response), the protocol falls back to the standard commands for the rest of the session.
+     *
+     * @param enabled true to use fast commands
+     */
+    public void setFastTransferEnabled(boolean enabled) {
+        this.fastTransferEnabled = enabled;
+        this.fastCommandsSupported = true;
+    }
+
+    public boolean isFastTransferEnabled() {
+        return fastTransferEnabled;
     }
 
-    private NfcCtrlResponse transceiveCommand(byte cmd, @Nullable byte[] cmdData) throws IOException {
-        int headerSize = ISO15693_CUSTOM_ST_HEADER_SIZE;
-        byte[] request = new byte[headerSize + (cmdData != null ? cmdData.length : 0)];
+    /**
+     * @return true if fast commands are currently sent to the tag
+     */
+    public boolean isFastTransferActive() {
+        return fastTransferEnabled && fastCommandsSupported;
+    }
+
+    /**
+     * Select the segmented transfer mode.
+     * <p>
+     * When enabled, requests and responses larger than the mailbox are split into consecutive mailbox messages.
+     * Each message starts with a one byte segment header: bit 7 ({@link #SEGMENT_FLAG_MORE}) is set when
+     * more segments follow, bits 0-6 hold the segment sequence number (starting at 0 for each request and response).
+     * This framing is specific to this plugin: the Tap firmware must implement the same framing.
+     * Disabled by default.
+     *
+     * @param enabled true to split messages into segments
+     */
+    public void setSegmentedTransferEnabled(boolean enabled) {
+        this.segmentedTransferEnabled = enabled;
+    }
+
+    public boolean isSegmentedTransferEnabled() {
+        return segmentedTransferEnabled;
+    }
+
+    /**
+     * Select the single read response mode.
+     * <p>
+     * When enabled, responses are read with one READ_MB_MSG command using the "read all" length encoding
+     * instead of READ_MB_MSG_LENGTH followed by READ_MB_MSG. This saves one RF round trip per response.
+     *
+     * @param enabled true to read responses with one command
+     */
+    public void setSingleReadResponseEnabled(boolean enabled) {
+        this.singleReadResponseEnabled = enabled;
+    }
+
+    public boolean isSingleReadResponseEnabled() {
+        return singleReadResponseEnabled;
+    }
 
-        request[0] = FLAG_HIGH_DATA_RATE;
+    /**
+     * Select the ISO15693 addressed mode.
+     * <p>
+     * When enabled, custom commands are sent with the address flag ({@link #FLAG_ADDRESSED}) and the tag UID
+     * after the manufacturer code, so that only this tag answers when several tags are in the field.
+     *
+     * @param enabled true to send addressed requests
+     */
+    public void setAddressedModeEnabled(boolean enabled) {
+        if (enabled && getTag().getId().length != ISO15693_UID_SIZE) {
+            throw new IllegalArgumentException("Cannot use addressed mode, tag UID is not a " + ISO15693_UID_SIZE + " bytes ISO15693 UID");
+        }
+        if (enabled != this.addressedModeEnabled) {
+            this.addressedModeEnabled = enabled;
+            this.headerSize = ISO15693_CUSTOM_ST_HEADER_SIZE + (enabled ? ISO15693_UID_SIZE : 0);
+            // Frames have been built for the previous header
+            Arrays.fill(this.requestFrames, null);
+        }
+    }
+
+    public boolean isAddressedModeEnabled() {
+        return addressedModeEnabled;
+    }
+
+    /**
+     * Get the request frame of the given command and size, reused between exchanges.
+     * <p>
+     * {@link NfcV#transceive(byte[])} sends the whole array, so one frame is kept per command and frame size:
+     * a frame only ever holds the parameters of its own command.
+     * The flag, command code, manufacturer code and UID (addressed mode) are set.
+     * The fast command code is set by {@link #transceiveCommand(byte, byte, byte[])}
+     *
+     * @param cmd        standard command code
+     * @param flag       request flag
+     * @param paramsSize number of command parameters, in bytes
+     * @return the request frame. Parameters start at {@link #headerSize}
+     */
+    @NonNull
+    private byte[] requestFrame(byte cmd, byte flag, int paramsSize) {
+        int frameSize = headerSize + paramsSize;
+        byte[][] commandFrames = requestFrames[cmd & 0xFF];
+        if (commandFrames == null) {
+            commandFrames = new byte[MAX_REQUEST_FRAME_SIZE + 1][];
+            requestFrames[cmd & 0xFF] = commandFrames;
+        }
+        byte[] request = commandFrames[frameSize];
+        if (request == null) {
+            request = new byte[frameSize];
+            request[2] = STM_MANUFACTURER_CODE;
+            if (addressedModeEnabled) {
+                System.arraycopy(getTag().getId(), 0, request, ISO15693_CUSTOM_ST_HEADER_SIZE, ISO15693_UID_SIZE);
+            }
+            commandFrames[frameSize] = request;
+        }
+        request[0] = addressedModeEnabled ? (byte) (flag | FLAG_ADDRESSED) : flag;
         request[1] = cmd;
-        request[2] = STM_MANUFACTURER_CODE;
+        return request;
+    }
 
-        if (cmdData != null) {
-            for (int i = 0; i < cmdData.length; i++){
-                request[headerSize + i] = cmdData[i];
+    /**
+     * Send a custom command using the fast opcode if fast transfer mode is active,
+     * the standard opcode otherwise.
+     *
+     * @param cmd     standard command code
+     * @param fastCmd fast command code
+     * @param request request frame given by {@link #requestFrame(byte, byte, int)} with its parameters
+     * @return the raw tag response: response flag followed by the response data
+     * @throws IOException when I/O exception
+     */
+    @NonNull
+    private byte[] transceiveCommand(byte cmd, byte fastCmd, @NonNull byte[] request) throws IOException {
+        if (this.isFastCommandAllowed(request)) {
+            try {
+                byte[] response = transceiveFastCommand(fastCmd, request);
+                if (response != null) {
+                    return response;
+                }
+            } catch (TagLostException e) {
+                throw e;
+            } catch (IOException e) {
+                // Fast commands are disabled, sending the standard command
             }
         }
+        request[1] = cmd;
+        return transceiveFrame(request, 0);
+    }
+
+    /**
+     * Fast commands are only allowed with high data rate
+     */
+    private boolean isFastCommandAllowed(@NonNull byte[] request) {
+        return this.isFastTransferActive() && (request[0] & FLAG_HIGH_DATA_RATE) != 0;
+    }
+
+    /**
+     * Send a custom command with its fast opcode. Fast commands are disabled when the tag rejects it or when it fails:
+     * some readers cannot decode the fast responses.
+     *
+     * @return the raw tag response, null if the tag does not support the command
+     * @throws IOException when I/O exception
+     */
+    @Nullable
+    private byte[] transceiveFastCommand(byte fastCmd, @NonNull byte[] request) throws IOException {
+        request[1] = fastCmd;
+        try {
+            byte[] response = transceiveFrame(request, NfcTraceBuffer.FLAG_FAST);
+            if (!isCommandRejected(response)) {
+                return response;
+            }
+            Log.w(TAG, "Fast command 0x" + Integer.toHexString(fastCmd & 0xFF) + " is not supported by the tag. Switching to standard commands");
+            this.fastCommandsSupported = false;
+            return null;
+        } catch (TagLostException e) {
+            throw e;
+        } catch (IOException e) {
+            Log.d(TAG, "Fast command 0x" + Integer.toHexString(fastCmd & 0xFF) + " failed with error: " + e.getMessage() + ". Switching to standard commands");
+            this.fastCommandsSupported = false;
+            throw e;
+        }
+    }
+
+    /**
+     * @param traceFlags {@link NfcTraceBuffer} flags of this frame
+     */
+    @NonNull
+    private byte[] transceiveFrame(@NonNull byte[] request, int traceFlags) throws IOException {
+        long startTime = NfcTraceBuffer.now();
         try {
             byte[] response = nfcTag.transceive(request);
-            return new NfcCtrlResponse(response);
+            traceBuffer.record(NfcTraceBuffer.TYPE_FRAME, request[1], traceFlags,
+                    response.length > 0 ? response[0] : NfcTraceBuffer.RESULT_IO_ERROR, request.length, response.length, startTime);
+            return response;
         }
         catch (TagLostException e) {
+            traceBuffer.record(NfcTraceBuffer.TYPE_FRAME, request[1], traceFlags, NfcTraceBuffer.RESULT_TAG_LOST, request.length, 0, startTime);
             this.disconnectAndNotify();
             throw e;
         }
+        catch (IOException e) {
+            traceBuffer.record(NfcTraceBuffer.TYPE_FRAME, request[1], traceFlags, NfcTraceBuffer.RESULT_IO_ERROR, request.length, 0, startTime);
+            throw e;
+        }
+    }
+
+    private static boolean isSuccessful(@Nullable byte[] response) {
+        return response != null && response.length > 0 && (response[0] & ISO15693_RESPONSE_FLAG_ERROR) == 0;
+    }
+
+    private static void assertSuccessful(@Nullable byte[] response, int minLength) throws IOException {
+        if (!isSuccessful(response) || response.length < minLength) {
+            throw new IOException("NFC command failed. Unexpected NFC response: 0x" + (response != null ? Helper.ByteArrayToHexString(response) : ""));
+        }
+    }
+
+    /**
+     * @return true if the tag answered with an ISO15693 "command not supported/recognized" error
+     */
+    private static boolean isCommandRejected(@Nullable byte[] response) {
+        if (isSuccessful(response)) {
+            return false;
+        }
+        return response != null && response.length >= 2
+                && (response[1] == ISO15693_ERROR_CMD_NOT_SUPPORTED || response[1] == ISO15693_ERROR_CMD_NOT_RECOGNIZED);
     }
 
     /**
-     * Send a read dynamicClosing tag register command to the ST25
+     * Send a read dynamic register command to the ST25
      *
      * @param configId : register RF address
-     * @return register value or 0Fh if error
-     * @throws IOException when I/O exception
+     * @return register value
+     * @throws IOException when I/O exception or when the tag answers with an error 3 times
      */
-    @NonNull
     private byte readDynConfig(byte configId) throws IOException {
-        NfcCtrlResponse response;
+        byte[] request = requestFrame(ISO15693_CUSTOM_ST_CMD_READ_DYN_CONFIG, FLAG_HIGH_DATA_RATE, 1);
+        request[headerSize] = configId;
+        byte[] response;
         int tryCount = 1;
         do {
-            byte[] config = new byte[]{configId};
-            response = transceiveCommand(ISO15693_CUSTOM_ST_CMD_READ_DYN_CONFIG, config);
-            Log.v(TAG, "readDynConfig try n° " + tryCount + "; configId=" + configId + " => response: 0x" + Helper.ByteArrayToHexString(response.rawData()));
-            if (response.isSuccessful()) {
-                return response.getRegisterValue();
+            response = transceiveCommand(ISO15693_CUSTOM_ST_CMD_READ_DYN_CONFIG, ISO15693_CUSTOM_ST_CMD_FAST_READ_DYN_CONFIG, request);
+            if (isSuccessful(response) && response.length >= 2) {
+                return response[1];
             }
-            else {
-                if (tryCount >= 3) {
-                    // Will throw
-                    response.successful();
-                }
-                tryCount++;
+            if (tryCount >= 3) {
+                // Will throw
+                assertSuccessful(response, 2);
             }
+            tryCount++;
         } while (true);
     }
 
+    /**
+     * @return MB_CTRL_DYN register value, to be tested with the MB_CTRL_DYN_* masks
+     */
+    private int readMBControl() throws IOException {
+        return readDynConfig(MB_CTRL_DYN) & 0xFF;
+    }
+
+    /**
+     * Check whether the last message written by RF has reached the mailbox, after a write without response
+     *
+     * @return true if the message is in the mailbox or has already been answered by the host
+     */
+    private boolean isMessageWritten() throws IOException {
+        int ctrlRegister = readMBControl();
+        return (ctrlRegister & (MB_CTRL_DYN_RF_PUT_MSG | MB_CTRL_DYN_RF_CURRENT_MSG | MB_CTRL_DYN_HOST_PUT_MSG)) != 0;
+    }
+
+    /**
+     * Presence check: read MB_CTRL_DYN. Unlike exchanges, the tag is not connected again if needed.
+     *
+     * @return true if the tag has answered
+     */
+    public boolean probe() {
+        if (!this.nfcTag.isConnected()) {
+            return false;
+        }
+        try {
+            readMBControl();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
 
     public int readMsgLength() throws IOException {
-        NfcCtrlResponse response = transceiveCommand(ISO15693_CUSTOM_ST25DV_CMD_READ_MB_MSG_LENGTH);
-        response.successful();
-        return response.body()[0] & 0xFF;
+        byte[] request = requestFrame(ISO15693_CUSTOM_ST25DV_CMD_READ_MB_MSG_LENGTH, FLAG_HIGH_DATA_RATE, 0);
+        byte[] response = transceiveCommand(ISO15693_CUSTOM_ST25DV_CMD_READ_MB_MSG_LENGTH, ISO15693_CUSTOM_ST25DV_CMD_FAST_READ_MB_MSG_LENGTH, request);
+        assertSuccessful(response, 2);
+        return response[1] & 0xFF;
     }
 
     /**
      * Send a Write message command to the st25
      *
      * @param buffer to send
-     * @return flag byte
+     * @return flag byte, null if the message has been written but the response to the fast command has been lost
      * @throws IOException when I/O exception
      */
+    @Nullable
     public NfcCtrlResponse writeMsg(byte[] buffer) throws IOException {
         return this.writeMsg(buffer.length, buffer);
     }
@@ -280,24 +720,60 @@ public class NFC5Protocol extends NFCProtocol {
      *
      * @param sizeInBytes to send
      * @param buffer      to send
-     * @return flag byte
+     * @return flag byte, null if the message has been written but the response to the fast command has been lost
      * @throws IOException when I/O exception
      */
+    @Nullable
     public NfcCtrlResponse writeMsg(int sizeInBytes, byte[] buffer) throws IOException {
         if (buffer.length < sizeInBytes) {
             throw new IllegalArgumentException("Cannot send " + sizeInBytes + " bytes. Buffer is too small");
         }
-        if (sizeInBytes > 0xFF) {
-            throw new IllegalArgumentException("NFC message is too big. Maximum size is " + 0xFF + " bytes but trying to write " + sizeInBytes + " bytes");
+        byte[] response = this.writeMessage(buffer, 0, sizeInBytes, NO_SEGMENT_HEADER);
+        return response != null ? new NfcCtrlResponse(response) : null;
+    }
+
+    /**
+     * Write a mailbox message straight from the given buffer
+     *
+     * @param buffer        message buffer
+     * @param offset        message position in buffer
+     * @param sizeInBytes   message size
+     * @param segmentHeader segment header written before the message, or {@link #NO_SEGMENT_HEADER}
+     * @return the raw tag response, null if the message has been written but the response to the fast command has been lost
+     * @throws IOException when I/O exception
+     */
+    @Nullable
+    private byte[] writeMessage(@NonNull byte[] buffer, int offset, int sizeInBytes, int segmentHeader) throws IOException {
+        int segmentHeaderSize = segmentHeader != NO_SEGMENT_HEADER ? SEGMENT_HEADER_SIZE : 0;
+        int messageSize = segmentHeaderSize + sizeInBytes;
+        if (messageSize > MAILBOX_MAX_MESSAGE_SIZE) {
+            throw new IllegalArgumentException("NFC message is too big. Maximum size is " + MAILBOX_MAX_MESSAGE_SIZE + " bytes but trying to write " + messageSize + " bytes");
         }
-        byte msgLength = (byte) ((sizeInBytes - 1) & 0xFF);
-        byte[] cmdData =  new byte[1 + sizeInBytes];
-        cmdData[0] = msgLength;
-        System.arraycopy(buffer, 0, cmdData, 1, sizeInBytes);
-        return transceiveCommand(
-            ISO15693_CUSTOM_ST25DV_CMD_WRITE_MB_MSG,
-            cmdData
-        );
+        byte[] request = requestFrame(ISO15693_CUSTOM_ST25DV_CMD_WRITE_MB_MSG, FLAG_HIGH_DATA_RATE, 1 + messageSize);
+        // Message length, then segment header and message after the request header
+        int position = this.headerSize;
+        request[position++] = (byte) ((messageSize - 1) & 0xFF);
+        if (segmentHeaderSize > 0) {
+            request[position++] = (byte) segmentHeader;
+        }
+        System.arraycopy(buffer, offset, request, position, sizeInBytes);
+        if (this.isFastCommandAllowed(request)) {
+            try {
+                byte[] response = transceiveFastCommand(ISO15693_CUSTOM_ST25DV_CMD_FAST_WRITE_MB_MSG, request);
+                if (response != null) {
+                    return response;
+                }
+            } catch (TagLostException e) {
+                throw e;
+            } catch (IOException e) {
+                if (isMessageWritten()) {
+                    // Only the response has been lost: do not write the message twice
+                    return null;
+                }
+            }
+        }
+        request[1] = ISO15693_CUSTOM_ST25DV_CMD_WRITE_MB_MSG;
+        return transceiveFrame(request, 0);
     }
 
     /**
@@ -309,14 +785,36 @@ public class NFC5Protocol extends NFCProtocol {
      */
     @NonNull
     public byte[] readMsg(byte offset, int msgLength) throws IOException {
-        NfcCtrlResponse response = transceiveCommand(
+        byte[] response = readMessage(offset, msgLength);
+        return Arrays.copyOfRange(response, Math.min(1, response.length), response.length);
+    }
+
+    /**
+     * Send a Read message command to the st25 reading the whole message in one command
+     *
+     * @return message
+     * @throws IOException when I/O exception or when the tag answers with an error
+     */
+    @NonNull
+    public byte[] readAllMsg() throws IOException {
+        byte[] response = readMessage((byte) 0, READ_MB_MSG_ALL);
+        assertSuccessful(response, 1);
+        return Arrays.copyOfRange(response, 1, response.length);
+    }
+
+    /**
+     * @return the raw tag response: response flag followed by the message
+     */
+    @NonNull
+    private byte[] readMessage(byte offset, int msgLength) throws IOException {
+        byte[] request = requestFrame(ISO15693_CUSTOM_ST25DV_CMD_READ_MB_MSG, FLAG_HIGH_DATA_RATE, 2);
+        request[headerSize] = offset;
+        request[headerSize + 1] = (byte) (0xFF & msgLength);
+        return transceiveCommand(
             ISO15693_CUSTOM_ST25DV_CMD_READ_MB_MSG,
-            new byte[]{
-                offset,
-                (byte) (0xFF & msgLength)
-            }
+            ISO15693_CUSTOM_ST25DV_CMD_FAST_READ_MB_MSG,
+            request
         );
-        return response.body();
     }
 
     /**
@@ -326,6 +824,11 @@ public class NFC5Protocol extends NFCProtocol {
      * #2: poll on MB_CTRL register until host put a msg
      * #3: get the message length
      * #4: send a read command to the ST25
+     * <p>
+     * With segmented transfer, #1 is repeated for each request segment once the previous one has been
+     * consumed by the host, and #2 to #4 are repeated until the last response segment is read.
+     * <p>
+     * The mailbox check is skipped when the previous exchange has left the mailbox in a known state.
      *
      * @param data to send to the module
      * @return module response or null if error
@@ -334,17 +837,127 @@ public class NFC5Protocol extends NFCProtocol {
      */
     @NonNull
     public byte[] transceiveISO15693(byte[] data) throws IOException, TimeOutException, InterruptedException {
+        boolean success = false;
+        try {
+            byte[] response = this._transceiveISO15693(data);
+            success = true;
+            return response;
+        } finally {
+            if (success) {
+                // Response has been read, host message is consumed
+                this.setMailboxReady();
+                if (tagProfile != null) {
+                    tagProfile.onExchange();
+                    if (tagProfile.getExchangeCount() % PROFILE_SAVE_INTERVAL == 0) {
+                        this.saveTagProfile();
+                    }
+                }
+            } else {
+                this.invalidateMailboxState();
+                NfcRequestToken token = requestToken;
+                if (token != null && token.isDone()) {
+                    this.resetMailbox();
+                }
+            }
+        }
+    }
+
+    /**
+     * Clear a partially written request or an unread response after an aborted exchange.
+     * Errors are ignored: the mailbox is checked again before next exchange anyway.
+     */
+    private void resetMailbox() {
+        try {
+            Log.d(TAG, "Exchange aborted, clearing mailbox");
+            writeDynConfig(MB_CTRL_DYN, DISABLE_MB, FLAG_HIGH_DATA_RATE);
+            writeDynConfig(MB_CTRL_DYN, ENABLE_MB, FLAG_HIGH_DATA_RATE);
+        } catch (IOException | RuntimeException e) {
+            Log.d(TAG, "Cannot clear mailbox: " + e.getMessage());
+        }
+    }
+
+    @NonNull
+    private byte[] _transceiveISO15693(byte[] data) throws IOException, TimeOutException, InterruptedException {
+        NfcRequestToken token = requestToken;
+        if (token != null) {
+            token.checkpoint();
+        }
         this._assertTagConnected();
 
-        this.checkMailbox();
+        boolean mailboxStateCached = this.checkMailbox();
+
+        if (segmentedTransferEnabled) {
+            return this.transceiveSegments(data, mailboxStateCached);
+        }
+
+        this.writeWithRetry(data, 0, data.length, NO_SEGMENT_HEADER, mailboxStateCached);
+        long writeTime = SystemClock.elapsedRealtime();
 
-        this.writeWithRetry(data);
+        this.pollMBControl(data.length, writeTime, true, beforePollingDelay);
 
-        // It seems that removing this initial delay not work properly with energy harvesting
-        Thread.sleep(beforePollingDelay);
-        this.pollMBControl();
+        byte[] response = this.readResponse();
+        return Arrays.copyOfRange(response, Math.min(1, response.length), response.length);
+    }
 
-        return this.readResponse();
+    @NonNull
+    private byte[] transceiveSegments(byte[] data, boolean mailboxStateCached) throws IOException, TimeOutException, InterruptedException {
+        int offset = 0;
+        int sequence = 0;
+        do {
+            int payloadSize = Math.min(SEGMENT_MAX_PAYLOAD_SIZE, data.length - offset);
+            boolean hasMore = offset + payloadSize < data.length;
+            int segmentHeader = (sequence & SEGMENT_SEQUENCE_MASK) | (hasMore ? SEGMENT_FLAG_MORE : 0);
+            if (sequence > 0) {
+                this.waitSegmentConsumed();
+            }
+            this.writeWithRetry(data, offset, payloadSize, segmentHeader, mailboxStateCached && sequence == 0);
+            offset += payloadSize;
+            sequence++;
+        } while (offset < data.length);
+        long writeTime = SystemClock.elapsedRealtime();
+
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        sequence = 0;
+        do {
+            // Only the first response segment latency depends on the request processing
+            this.pollMBControl(data.length, writeTime, sequence == 0, sequence == 0 ? beforePollingDelay : 0);
+            // Response flag, segment header, payload
+            byte[] segment = this.readResponse();
+            if (segment.length < 1 + SEGMENT_HEADER_SIZE) {
+                throw new IOException("Invalid NFC response segment: missing segment header");
+            }
+            int receivedSequence = segment[1] & SEGMENT_SEQUENCE_MASK;
+            if (receivedSequence != (sequence & SEGMENT_SEQUENCE_MASK)) {
+                throw new IOException("Invalid NFC response segment sequence. Expected " + (sequence & SEGMENT_SEQUENCE_MASK) + " but received " + receivedSequence);
+            }
+            response.write(segment, 1 + SEGMENT_HEADER_SIZE, segment.length - 1 - SEGMENT_HEADER_SIZE);
+            if ((segment[1] & SEGMENT_FLAG_MORE) == 0) {
+                return response.toByteArray();
+            }
+            sequence++;
+            writeTime = SystemClock.elapsedRealtime();
+        } while (true);
+    }
+
+    /**
+     * Poll MB_CTRL_Dyn register until the message written by RF has been read by the host
+     *
+     * @throws TimeOutException if the host does not read the message in time
+     */
+    private void waitSegmentConsumed() throws IOException, InterruptedException, TimeOutException {
+        // RF time of the register reads counts as well as the sleeps
+        long startTime = SystemClock.elapsedRealtime();
+        long elapsed = 0;
+        while (elapsed < TIMEOUT_NFC5) {
+            int ctrlRegister = readMBControl();
+            if ((ctrlRegister & MB_CTRL_DYN_RF_CURRENT_MSG) == 0 || (ctrlRegister & MB_CTRL_DYN_HOST_PUT_MSG) != 0) {
+                return;
+            }
+            elapsed = SystemClock.elapsedRealtime() - startTime;
+            NfcRequestToken.sleep(requestToken, Math.max(0, Math.min(SEGMENT_POLLING_DELAY, TIMEOUT_NFC5 - elapsed)));
+            elapsed = SystemClock.elapsedRealtime() - startTime;
+        }
+        throw new TimeOutException("NFC send Timeout. Device did not read request segment in given time (" + TIMEOUT_NFC5 + "ms)");
     }
 
     private void _assertTagConnected() throws IOException {
@@ -360,6 +973,7 @@ public class NFC5Protocol extends NFCProtocol {
 
     private void connectNfcTag() throws IOException {
         Log.d(TAG, "Connecting NFC tag");
+        this.invalidateMailboxState();
         try {
             nfcTag.connect();
             boolean isConnected = nfcTag.isConnected();
@@ -372,29 +986,55 @@ public class NFC5Protocol extends NFCProtocol {
                 throw err;
             }
         }
-        readEnergyHarvestingConfig();
+        Boolean energyHarvestingEnabled = tagProfile != null ? tagProfile.isEnergyHarvestingEnabled() : null;
+        if (energyHarvestingEnabled != null) {
+            Log.d(TAG, "Using energy harvesting mode from tag profile: " + energyHarvestingEnabled);
+            this.applyEnergyHarvestingMode(energyHarvestingEnabled);
+        } else {
+            readEnergyHarvestingConfig();
+        }
+        if (tagProfile != null) {
+            tagProfile.onConnect();
+            this.saveTagProfile();
+        }
     }
 
+    /**
+     * @return the raw tag response: response flag followed by the message
+     */
+    @NonNull
     private byte[] readResponse() throws TimeOutException, IOException, InterruptedException {
+        NfcRequestToken token = requestToken;
         int msgLength;
         byte offset = 0;
         int retryCount = 0;
         IOException lastReadError;
         do {
+            if (token != null) {
+                token.checkpoint();
+            }
             try {
+                if (singleReadResponseEnabled) {
+                    byte[] response = readMessage((byte) 0, READ_MB_MSG_ALL);
+                    assertSuccessful(response, 1);
+                    return response;
+                }
                 //read message length
                 msgLength = readMsgLength();
                 if (msgLength < 0) {
                     throw new IllegalStateException("Received a negative message length: " + msgLength);
                 }
-                return readMsg(offset, msgLength);
+                return readMessage(offset, msgLength);
 
 
             } catch (IOException err) {
                 Log.d(TAG, "Attempt to read n°" + retryCount + 1 + " failed with error " + err.getMessage());
                 lastReadError = err;
                 retryCount++;
-                Thread.sleep(DELAY);
+                if (tagProfile != null) {
+                    tagProfile.onReadRetry();
+                }
+                NfcRequestToken.sleep(token, DELAY);
             }
         }
         while (retryCount < NB_MAX_RETRY);
@@ -404,66 +1044,120 @@ public class NFC5Protocol extends NFCProtocol {
 
     /**
      * poll MB_CTRL_Dyn register to see if answer is arrived
+     * <p>
+     * Polling delays are given by the {@link MailboxPollingScheduler} according to the latencies
+     * previously observed for this tag and this request size.
      *
-     * @return register status when a message arrived
+     * @param requestSize   size of the request, in bytes
+     * @param writeTime     time at which the request has been written ({@link SystemClock#elapsedRealtime()})
+     * @param recordLatency true to learn from this response latency
+     * @param defaultDelay  delay of the first poll when no latency has been learned, in ms.
+     *                      It seems that polling right after the write does not work properly with energy harvesting
      * @throws IOException
      * @throws InterruptedException
      * @throws TimeOutException
      */
-    private MBCtrlDyn pollMBControl() throws IOException, InterruptedException, TimeOutException {
-        MBCtrlDyn ctrlRegister;
-
-        long time = 0;
+    private void pollMBControl(int requestSize, long writeTime, boolean recordLatency, long defaultDelay) throws IOException, InterruptedException, TimeOutException {
+        NfcRequestToken token = requestToken;
+        MailboxPollingScheduler.LatencyStats stats = pollingScheduler.getStats(tagKey, requestSize);
+        if (recordLatency) {
+            pollingScheduler.onExchangeStarted(stats);
+        }
 
-        long pollingDelay = this.responsePollingDelay;
+        long elapsed = SystemClock.elapsedRealtime() - writeTime;
+        long pollingDelay = pollingScheduler.getInitialPollingDelay(stats, elapsed, defaultDelay);
+        if (pollingDelay > 0) {
+            NfcRequestToken.sleep(token, pollingDelay);
+        }
+        pollingDelay = 0;
 
-        while (time < TIMEOUT_NFC5) {
-            ctrlRegister = readMBConfig();
-            if (ctrlRegister.hasFlag(MBCtrlDyn.Flags.HOST_PUT_MSG)) {
-                return ctrlRegister;
+        while (elapsed < TIMEOUT_NFC5) {
+            if (token != null) {
+                token.checkpoint();
             }
-            Thread.sleep(pollingDelay);
-            time += pollingDelay;
-            pollingDelay = pollingDelay * 2;
+            boolean hasResponse = (readMBControl() & MB_CTRL_DYN_HOST_PUT_MSG) != 0;
+            pollingScheduler.onPoll(hasResponse);
+            elapsed = SystemClock.elapsedRealtime() - writeTime;
+            if (hasResponse) {
+                if (recordLatency) {
+                    pollingScheduler.onResponse(stats, elapsed);
+                }
+                return;
+            }
+            pollingDelay = pollingScheduler.getNextPollingDelay(stats, elapsed, pollingDelay, this.responsePollingDelay);
+            // Always poll one last time when the timeout is reached
+            NfcRequestToken.sleep(token, Math.max(0, Math.min(pollingDelay, TIMEOUT_NFC5 - elapsed)));
+            elapsed = SystemClock.elapsedRealtime() - writeTime;
         }
 
+        pollingScheduler.onTimeout();
+        if (tagProfile != null) {
+            tagProfile.onTimeout();
+            // Energy harvesting configuration may have changed, read it again on next connection
+            tagProfile.setEnergyHarvestingEnabled(null);
+        }
         throw new TimeOutException("NFC receive Timeout. Device did not response to request in given time (" + TIMEOUT_NFC5 + "ms)");
     }
 
-    private void writeWithRetry(byte[] data) throws IOException, InterruptedException {
+    /**
+     * @param data               message buffer
+     * @param offset             message position in buffer
+     * @param size               message size
+     * @param segmentHeader      segment header or {@link #NO_SEGMENT_HEADER}
+     * @param mailboxStateCached true if the mailbox check has been skipped. The mailbox is checked again on first failure
+     */
+    private void writeWithRetry(byte[] data, int offset, int size, int segmentHeader, boolean mailboxStateCached) throws IOException, InterruptedException, TimeOutException {
+        NfcRequestToken token = requestToken;
         int count = 0;
-        NfcCtrlResponse response;
+        byte[] response;
         do {
-            response = writeMsg(data);
-            if (response.isSuccessful()) {
+            if (token != null) {
+                token.checkpoint();
+            }
+            response = writeMessage(data, offset, size, segmentHeader);
+            if (response == null || isSuccessful(response)) {
                 return;
             }
+            if (count == 0 && mailboxStateCached) {
+                Log.d(TAG, "nfc write failed with cached mailbox state, checking mailbox");
+                this.invalidateMailboxState();
+                this.checkMailbox();
+            }
             count++;
-            Log.d(TAG, "retry n°" + count + " nfc write " + data.length + " bytes");
-            Thread.sleep(DELAY);
+            if (tagProfile != null) {
+                tagProfile.onWriteRetry();
+            }
+            Log.d(TAG, "retry n°" + count + " nfc write " + size + " bytes");
+            NfcRequestToken.sleep(token, DELAY);
         }
         while (count < NB_MAX_RETRY);
 
-        throw new IOException("NFC tag write failed. " + (response != null ? "Unexpected NFC response: " + Helper.ByteArrayToHexString(response.rawData()) : ""));
+        throw new IOException("NFC tag write failed. " + (response != null ? "Unexpected NFC response: " + Helper.ByteArrayToHexString(response) : ""));
     }
 
     /**
      * check if mailbox is enable, if not, reset mailbox
      * => check that fast transfer mode is on ?
+     * <p>
+     * MB_CTRL_DYN is not read when the mailbox state is already known
      *
+     * @return true if the check has been skipped because the mailbox state is known
      * @throws IOException
      */
-    private void checkMailbox() throws IOException {
-        MBCtrlDyn status = readMBConfig();
+    private boolean checkMailbox() throws IOException {
+        if (this.isMailboxStateKnown()) {
+            return true;
+        }
+        int status = readMBControl();
 
-        if (!status.hasFlag(MBCtrlDyn.Flags.MB_ENABLED) ||
-                status.hasFlag(MBCtrlDyn.Flags.RF_CURRENT_MSG) ||
-                        status.hasFlag(MBCtrlDyn.Flags.HOST_CURRENT_MSG)) {
+        if ((status & MB_CTRL_DYN_MB_EN) == 0 ||
+                (status & MB_CTRL_DYN_RF_CURRENT_MSG) != 0 ||
+                        (status & MB_CTRL_DYN_HOST_CURRENT_MSG) != 0) {
             Log.d(TAG, "checkMailbox: clearing msgbox...");
             writeDynConfig(MB_CTRL_DYN, DISABLE_MB, FLAG_HIGH_DATA_RATE);
             writeDynConfig(MB_CTRL_DYN, ENABLE_MB, FLAG_HIGH_DATA_RATE);
-            status = readMBConfig();
-            if (!status.hasFlag(MBCtrlDyn.Flags.MB_ENABLED)){
+            status = readMBControl();
+            if ((status & MB_CTRL_DYN_MB_EN) == 0){
                 throw new IOException("Cannot enabled NFC communication");
             }
         }
@@ -472,6 +1166,23 @@ public class NFC5Protocol extends NFCProtocol {
 //            writeDynConfig(MB_CTRL_DYN, ENABLE_MB, FLAG_HIGH_DATA_RATE);
 //            Log.d(TAG, "checkMailbox: clear msgbox");
 //        }
+        return false;
+    }
+
+    private void setMailboxReady() {
+        this.mailboxReady = true;
+        this.mailboxReadyTime = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Force MB_CTRL_DYN to be read before next exchange
+     */
+    public void invalidateMailboxState() {
+        this.mailboxReady = false;
+    }
+
+    private boolean isMailboxStateKnown() {
+        return this.mailboxReady && SystemClock.elapsedRealtime() - this.mailboxReadyTime < MAILBOX_WATCHDOG;
     }
 
 
@@ -480,27 +1191,19 @@ public class NFC5Protocol extends NFCProtocol {
      *
      * @param configId          : command corresponding to register
      * @param newAttributeValue : value to set to the register
-     * @param flag              flag
+     * @param flag              flag. The address flag is added in addressed mode
      * @return the response
      * @throws IOException if fails
      */
     public byte[] writeDynConfig(byte configId, byte newAttributeValue, byte flag) throws IOException {
-        byte[] request;
-        int header_size;
-
-        header_size = ISO15693_CUSTOM_ST_HEADER_SIZE;
-        request = new byte[header_size + 1 + 1]; // +1 for configId and +1 for newAttributeValue
-
-        request[0] = flag;
-        request[1] = ISO15693_CUSTOM_ST_CMD_WRITE_DYN_CONFIG;
-        request[2] = STM_MANUFACTURER_CODE;
-
-        //if (uidNeeded(flag)) addUidToFrame(request, ISO15693_CUSTOM_ST_HEADER_SIZE, uid);
-
-        request[header_size] = configId;
-        request[header_size + 1] = newAttributeValue;
-
-        return nfcTag.transceive(request);
+        byte[] request = requestFrame(ISO15693_CUSTOM_ST_CMD_WRITE_DYN_CONFIG, flag, 2);
+        request[headerSize] = configId;
+        request[headerSize + 1] = newAttributeValue;
+        return transceiveCommand(
+            ISO15693_CUSTOM_ST_CMD_WRITE_DYN_CONFIG,
+            ISO15693_CUSTOM_ST_CMD_FAST_WRITE_DYN_CONFIG,
+            request
+        );
     }
 
     public String toString() {
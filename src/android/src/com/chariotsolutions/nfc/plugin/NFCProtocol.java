@@ -57,7 +57,7 @@ public abstract class NFCProtocol extends AbstractComProtocol {
     };
 
     @NonNull
-    private final Tag mTag;
+    private Tag mTag;
 
     public NFCProtocol(@NonNull Tag tag) {
         this.mTag = tag;
@@ -100,5 +100,18 @@ public abstract class NFCProtocol extends AbstractComProtocol {
         return mTag;
     }
 
+    /**
+     * Bind this protocol to a new discovery of the same tag, when the tag is tapped again.
+     * Subclasses get their tag technology from the new tag.
+     *
+     * @throws IllegalArgumentException if this is not the same tag
+     */
+    public void rebind(@NonNull Tag tag) {
+        if (!isSameTag(tag)) {
+            throw new IllegalArgumentException("Cannot bind protocol to another tag");
+        }
+        this.mTag = tag;
+    }
+
 }
 
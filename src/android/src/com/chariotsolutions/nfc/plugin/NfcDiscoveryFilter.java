@@ -0,0 +1,216 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Ordered delivery of tag discoveries, with per tag UID debouncing or coalescing.
+ * <p>
+ * Discoveries are delivered one at a time, in order, on the discovery lane of the executor.
+ * Repeated discoveries of the same tag (e.g. a phone hovering at the edge of the field) are filtered
+ * before any parsing according to the mode:
+ * <ul>
+ * <li>{@link #MODE_NONE}: every discovery is delivered</li>
+ * <li>{@link #MODE_DEBOUNCE}: a discovery is dropped if the same tag has been seen less than the window ago</li>
+ * <li>{@link #MODE_COALESCE}: a discovery is delivered at the end of the window, with the last discovery
+ * of the same tag during the window replacing the previous ones</li>
+ * </ul>
+ */
+public class NfcDiscoveryFilter {
+
+    private static final String TAG = "NfcDiscoveryFilter";
+
+    public static final String MODE_NONE = "none";
+    public static final String MODE_DEBOUNCE = "debounce";
+    public static final String MODE_COALESCE = "coalesce";
+
+    public static final long DEFAULT_WINDOW = 1000;
+
+    /**
+     * Executor lane of discovery handling
+     */
+    public static final String LANE = "discovery";
+
+    /**
+     * Maximum number of tags tracked
+     */
+    private static final int MAX_TAGS = 32;
+
+    /**
+     * Timer shared by all filters. Only the scheduling is done on this thread, discoveries are handled by the executor.
+     */
+    private static final ScheduledThreadPoolExecutor timer = createTimer();
+
+    @NonNull
+    private final NfcExecutor executor;
+    @NonNull
+    private volatile String mode;
+    private volatile long window;
+
+    /**
+     * Tags seen recently, by UID
+     */
+    private final LinkedHashMap<String, TagEntry> entries = new LinkedHashMap<String, TagEntry>(MAX_TAGS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TagEntry> eldest) {
+            return size() > MAX_TAGS && eldest.getValue().pending == null;
+        }
+    };
+
+    private long received = 0;
+    private long delivered = 0;
+    private long debounced = 0;
+    private long coalesced = 0;
+
+    private static class TagEntry {
+        long lastSeenTime;
+        /**
+         * Discovery waiting for the end of the coalescing window
+         */
+        @Nullable
+        Runnable pending;
+    }
+
+    /**
+     * @param mode   MODE_*
+     * @param window debouncing or coalescing window, in ms
+     */
+    public NfcDiscoveryFilter(@NonNull NfcExecutor executor, @NonNull String mode, long window) {
+        this.executor = executor;
+        this.mode = MODE_NONE;
+        setMode(mode, window);
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * @param mode   MODE_*
+     * @param window debouncing or coalescing window, in ms
+     * @throws IllegalArgumentException if the mode is unknown or the window negative
+     */
+    public void setMode(@NonNull String mode, long window) {
+        if (!MODE_NONE.equalsIgnoreCase(mode) && !MODE_DEBOUNCE.equalsIgnoreCase(mode) && !MODE_COALESCE.equalsIgnoreCase(mode)) {
+            throw new IllegalArgumentException("Unknown discovery filter \"" + mode + "\". Expecting \"none\", \"debounce\" or \"coalesce\"");
+        }
+        if (window < 0) {
+            throw new IllegalArgumentException("Invalid discovery window: " + window);
+        }
+        synchronized (this) {
+            this.mode = mode.toLowerCase();
+            this.window = window;
+        }
+    }
+
+    @NonNull
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * Submit a discovery
+     *
+     * @param uid       tag UID, null if the discovery has no tag: it is delivered without filtering
+     * @param discovery discovery handling, run on the discovery lane
+     */
+    public void submit(@Nullable String uid, @NonNull Runnable discovery) {
+        submit(uid, discovery, SystemClock.elapsedRealtime());
+    }
+
+    void submit(@Nullable String uid, @NonNull Runnable discovery, long now) {
+        synchronized (this) {
+            received++;
+            if (uid == null || MODE_NONE.equals(mode) || window == 0) {
+                deliver(discovery);
+                return;
+            }
+            TagEntry entry = entries.get(uid);
+            boolean inWindow = entry != null && now - entry.lastSeenTime < window;
+            if (entry == null) {
+                entry = new TagEntry();
+                entries.put(uid, entry);
+            }
+            entry.lastSeenTime = now;
+
+            if (MODE_DEBOUNCE.equals(mode)) {
+                if (inWindow) {
+                    debounced++;
+                    Log.d(TAG, "Discovery of " + uid + " debounced");
+                } else {
+                    deliver(discovery);
+                }
+                return;
+            }
+
+            // Coalesce
+            if (entry.pending != null) {
+                coalesced++;
+                Log.d(TAG, "Discovery of " + uid + " coalesced");
+                entry.pending = discovery;
+                return;
+            }
+            entry.pending = discovery;
+            final TagEntry scheduled = entry;
+            timer.schedule(() -> flush(scheduled), window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void flush(@NonNull TagEntry entry) {
+        Runnable discovery = entry.pending;
+        entry.pending = null;
+        if (discovery != null) {
+            deliver(discovery);
+        }
+        evictIdleEntries(SystemClock.elapsedRealtime());
+    }
+
+    private void deliver(@NonNull Runnable discovery) {
+        delivered++;
+        executor.execute(LANE, NfcExecutor.PRIORITY_EVENT, discovery);
+    }
+
+    private void evictIdleEntries(long now) {
+        Iterator<TagEntry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            TagEntry entry = iterator.next();
+            if (entry.pending == null && now - entry.lastSeenTime >= window) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Filter settings and counters: discoveries received, delivered, dropped by debouncing and replaced by coalescing
+     */
+    @NonNull
+    public synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("mode", mode);
+        json.put("window", window);
+        json.put("received", received);
+        json.put("delivered", delivered);
+        json.put("debounced", debounced);
+        json.put("coalesced", coalesced);
+        json.put("suppressed", debounced + coalesced);
+        return json;
+    }
+}
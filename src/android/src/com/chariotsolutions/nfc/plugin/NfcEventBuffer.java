@@ -0,0 +1,196 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Last events sent to the JavaScript channel, numbered in sending order.
+ * <p>
+ * Events sent while the channel is not attached (before the channel action, during a WebView reload) are kept
+ * and flushed in order when the channel attaches, see {@link #takePending()}. Delivered events are kept too,
+ * so that the application can ask for the events it missed, see {@link #getSince(long)}.
+ * <p>
+ * The buffer holds at most {@link #CAPACITY} events. Events expire after the retention of their type.
+ */
+public class NfcEventBuffer {
+
+    private static final String TAG = "NfcEventBuffer";
+
+    private static final int CAPACITY = 64;
+
+    public static final long DEFAULT_RETENTION = 10000;
+
+    private final ArrayDeque<Record> records = new ArrayDeque<>(CAPACITY);
+
+    /**
+     * Retention by event type, in ms
+     */
+    private final Map<String, Long> retentions = new HashMap<>();
+    private long defaultRetention = DEFAULT_RETENTION;
+
+    private long nextSeq = 1;
+    private long expired = 0;
+    private long overflowed = 0;
+
+    private static class Record {
+        final long seq;
+        final long time;
+        final long retention;
+        @NonNull
+        final JSONObject event;
+        boolean delivered;
+
+        Record(long seq, long time, long retention, @NonNull JSONObject event, boolean delivered) {
+            this.seq = seq;
+            this.time = time;
+            this.retention = retention;
+            this.event = event;
+            this.delivered = delivered;
+        }
+
+        boolean isExpired(long now) {
+            return now - time >= retention;
+        }
+    }
+
+    /**
+     * @param retention time events are kept, in ms. 0 not to keep events
+     */
+    public synchronized void setDefaultRetention(long retention) {
+        this.defaultRetention = retention;
+    }
+
+    /**
+     * @param type      event type
+     * @param retention time events of this type are kept, in ms. 0 not to keep them
+     */
+    public synchronized void setRetention(@NonNull String type, long retention) {
+        retentions.put(type, retention);
+    }
+
+    private long getRetention(@NonNull String type) {
+        Long retention = retentions.get(type);
+        return retention != null ? retention : defaultRetention;
+    }
+
+    /**
+     * Number the event (seq property) and keep it
+     *
+     * @param delivered true if the event is sent to the channel, false if it must be flushed on attach
+     * @return sequence number of the event
+     */
+    public long add(@NonNull JSONObject event, boolean delivered) throws JSONException {
+        return add(event, delivered, SystemClock.elapsedRealtime());
+    }
+
+    synchronized long add(@NonNull JSONObject event, boolean delivered, long now) throws JSONException {
+        long seq = nextSeq++;
+        event.put("seq", seq);
+        evictExpired(now);
+        long retention = getRetention(event.optString("type"));
+        if (retention <= 0) {
+            if (!delivered) {
+                expired++;
+            }
+            return seq;
+        }
+        if (records.size() >= CAPACITY) {
+            Record eldest = records.removeFirst();
+            if (!eldest.delivered) {
+                overflowed++;
+                Log.w(TAG, "Event buffer full, undelivered event " + eldest.seq + " dropped");
+            }
+        }
+        records.addLast(new Record(seq, now, retention, event, delivered));
+        return seq;
+    }
+
+    /**
+     * @return the events not delivered yet, in order. They are now delivered.
+     */
+    @NonNull
+    public JSONArray takePending() {
+        return takePending(SystemClock.elapsedRealtime());
+    }
+
+    @NonNull
+    synchronized JSONArray takePending(long now) {
+        evictExpired(now);
+        JSONArray events = new JSONArray();
+        for (Record record : records) {
+            if (!record.delivered) {
+                record.delivered = true;
+                events.put(record.event);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * @return the events still kept with a sequence number greater than seq, in order
+     */
+    @NonNull
+    public JSONArray getSince(long seq) {
+        return getSince(seq, SystemClock.elapsedRealtime());
+    }
+
+    @NonNull
+    synchronized JSONArray getSince(long seq, long now) {
+        evictExpired(now);
+        JSONArray events = new JSONArray();
+        for (Record record : records) {
+            if (record.seq > seq) {
+                events.put(record.event);
+            }
+        }
+        return events;
+    }
+
+    public synchronized void clear() {
+        records.clear();
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Record> iterator = records.iterator();
+        while (iterator.hasNext()) {
+            Record record = iterator.next();
+            if (record.isExpired(now)) {
+                if (!record.delivered) {
+                    expired++;
+                }
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Buffer counters: events kept, pending, last sequence number, and undelivered events lost by expiration or overflow
+     */
+    @NonNull
+    public synchronized JSONObject toJSON() throws JSONException {
+        int pending = 0;
+        for (Record record : records) {
+            if (!record.delivered) {
+                pending++;
+            }
+        }
+        JSONObject json = new JSONObject();
+        json.put("size", records.size());
+        json.put("pending", pending);
+        json.put("lastSeq", nextSeq - 1);
+        json.put("expired", expired);
+        json.put("overflowed", overflowed);
+        return json;
+    }
+}
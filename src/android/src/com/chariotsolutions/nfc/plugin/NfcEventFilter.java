@@ -0,0 +1,263 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.nfc.NdefMessage;
+import android.nfc.NdefRecord;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Subscriptions of the application to tag events, checked before the event payload is built.
+ * <p>
+ * Without subscription, every event is sent with its full payload. Once the application has subscribed,
+ * an event is sent only if a subscription matches it, with the highest detail level of the matching subscriptions.
+ * Criteria of a subscription must all match; a criterion given as a list matches if any of its values matches.
+ */
+public class NfcEventFilter {
+
+    /**
+     * Tag id and technologies, and NDEF message for NDEF events
+     */
+    public static final String DETAIL_FULL = "full";
+    /**
+     * Tag id and technologies, and handle of the tag snapshot to fetch the details on demand
+     */
+    public static final String DETAIL_SUMMARY = "summary";
+    /**
+     * Tag id and technologies only: no NDEF data, no NDEF technology calls
+     */
+    public static final String DETAIL_TAG = "tag";
+    /**
+     * Tag id only
+     */
+    public static final String DETAIL_ID = "id";
+
+    private static final List<String> DETAILS = Arrays.asList(DETAIL_ID, DETAIL_TAG, DETAIL_SUMMARY, DETAIL_FULL);
+
+    private final Map<String, Subscription> subscriptions = new LinkedHashMap<>();
+    private int nextId = 1;
+    /**
+     * Detail level of the events when there is no subscription
+     */
+    @NonNull
+    private String defaultDetail = DETAIL_FULL;
+
+    private long matched = 0;
+    private long filtered = 0;
+
+    private static class Subscription {
+        @Nullable
+        final List<String> types;
+        @Nullable
+        final List<String> techs;
+        @Nullable
+        final String uidPrefix;
+        @Nullable
+        final List<String> mimeTypes;
+        @Nullable
+        final List<String> recordTypes;
+        @NonNull
+        final String detail;
+
+        Subscription(@NonNull JSONObject options) throws JSONException {
+            types = optStringList(options, "types");
+            techs = optStringList(options, "techs");
+            uidPrefix = options.isNull("uidPrefix") ? null : options.getString("uidPrefix").toUpperCase(Locale.ROOT);
+            mimeTypes = optStringList(options, "mimeTypes");
+            recordTypes = optStringList(options, "recordTypes");
+            detail = checkDetail(options.optString("detail", DETAIL_FULL));
+        }
+
+        boolean matches(@NonNull String type, @NonNull TagSnapshot snapshot) {
+            if (types != null && !types.contains(type)) {
+                return false;
+            }
+            if (techs != null && !matchesTech(snapshot)) {
+                return false;
+            }
+            if (uidPrefix != null && !snapshot.getId().toUpperCase(Locale.ROOT).startsWith(uidPrefix)) {
+                return false;
+            }
+            if (mimeTypes == null && recordTypes == null) {
+                return true;
+            }
+            NdefMessage message = snapshot.getNdefMessage();
+            if (message == null) {
+                return false;
+            }
+            return (mimeTypes == null || matchesMimeType(message)) && (recordTypes == null || matchesRecordType(message));
+        }
+
+        private boolean matchesTech(@NonNull TagSnapshot snapshot) {
+            for (String tech : snapshot.getTechList()) {
+                for (String wanted : techs) {
+                    // Simple names are accepted: NfcV for android.nfc.tech.NfcV
+                    if (tech.equals(wanted) || tech.endsWith("." + wanted)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean matchesMimeType(@NonNull NdefMessage message) {
+            for (NdefRecord record : message.getRecords()) {
+                String mimeType = record.toMimeType();
+                if (mimeType == null) {
+                    continue;
+                }
+                for (String wanted : mimeTypes) {
+                    // Wildcard at the end is accepted: text/*
+                    if (wanted.endsWith("*")
+                            ? mimeType.regionMatches(true, 0, wanted, 0, wanted.length() - 1)
+                            : mimeType.equalsIgnoreCase(wanted)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean matchesRecordType(@NonNull NdefMessage message) {
+            for (NdefRecord record : message.getRecords()) {
+                String recordType = new String(record.getType(), StandardCharsets.US_ASCII);
+                if (recordTypes.contains(recordType)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        JSONObject toJSON() throws JSONException {
+            JSONObject json = new JSONObject();
+            putList(json, "types", types);
+            putList(json, "techs", techs);
+            json.put("uidPrefix", uidPrefix);
+            putList(json, "mimeTypes", mimeTypes);
+            putList(json, "recordTypes", recordTypes);
+            json.put("detail", detail);
+            return json;
+        }
+    }
+
+    @NonNull
+    private static String checkDetail(@NonNull String detail) {
+        if (!DETAILS.contains(detail)) {
+            throw new IllegalArgumentException("Unknown detail level \"" + detail + "\". Expecting \"full\", \"summary\", \"tag\" or \"id\"");
+        }
+        return detail;
+    }
+
+    @Nullable
+    private static List<String> optStringList(@NonNull JSONObject options, @NonNull String name) throws JSONException {
+        if (options.isNull(name)) {
+            return null;
+        }
+        Object value = options.get(name);
+        List<String> list = new ArrayList<>();
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            for (int i = 0; i < array.length(); i++) {
+                list.add(array.getString(i));
+            }
+        } else {
+            list.add(value.toString());
+        }
+        return list;
+    }
+
+    private static void putList(@NonNull JSONObject json, @NonNull String name, @Nullable List<String> list) throws JSONException {
+        if (list != null) {
+            json.put(name, new JSONArray(list));
+        }
+    }
+
+    /**
+     * @param detail detail level of the events when there is no subscription, DETAIL_*
+     * @throws IllegalArgumentException if the detail level is unknown
+     */
+    public synchronized void setDefaultDetail(@NonNull String detail) {
+        this.defaultDetail = checkDetail(detail);
+    }
+
+    /**
+     * @param options criteria (types, techs, uidPrefix, mimeTypes, recordTypes) and payload detail level
+     * @return subscription id
+     * @throws IllegalArgumentException if the detail level is unknown
+     */
+    @NonNull
+    public synchronized String subscribe(@NonNull JSONObject options) throws JSONException {
+        Subscription subscription = new Subscription(options);
+        String id = String.valueOf(nextId++);
+        subscriptions.put(id, subscription);
+        return id;
+    }
+
+    /**
+     * @param id subscription id, null to remove all subscriptions
+     * @return number of subscriptions removed
+     */
+    public synchronized int unsubscribe(@Nullable String id) {
+        if (id == null) {
+            int count = subscriptions.size();
+            subscriptions.clear();
+            return count;
+        }
+        return subscriptions.remove(id) != null ? 1 : 0;
+    }
+
+    /**
+     * @return detail level of the event payload, null if the event must not be sent
+     */
+    @Nullable
+    public synchronized String match(@NonNull String type, @NonNull TagSnapshot snapshot) {
+        if (subscriptions.isEmpty()) {
+            return defaultDetail;
+        }
+        String detail = null;
+        Iterator<Subscription> iterator = subscriptions.values().iterator();
+        while (iterator.hasNext() && !DETAIL_FULL.equals(detail)) {
+            Subscription subscription = iterator.next();
+            if (subscription.matches(type, snapshot)
+                    && (detail == null || DETAILS.indexOf(subscription.detail) > DETAILS.indexOf(detail))) {
+                detail = subscription.detail;
+            }
+        }
+        if (detail == null) {
+            filtered++;
+        } else {
+            matched++;
+        }
+        return detail;
+    }
+
+    /**
+     * Subscriptions by id, and counters of events sent and filtered out
+     */
+    @NonNull
+    public synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        JSONObject subscriptionsJSON = new JSONObject();
+        for (Map.Entry<String, Subscription> entry : subscriptions.entrySet()) {
+            subscriptionsJSON.put(entry.getKey(), entry.getValue().toJSON());
+        }
+        json.put("subscriptions", subscriptionsJSON);
+        json.put("defaultDetail", defaultDetail);
+        json.put("matched", matched);
+        json.put("filtered", filtered);
+        return json;
+    }
+}
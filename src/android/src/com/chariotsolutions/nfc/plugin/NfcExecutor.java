@@ -0,0 +1,232 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.os.Process;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Executor of the NFC operations of the plugin, separate from the Cordova thread pool.
+ * <p>
+ * Operations are submitted to a lane (usually a tag session id). Operations of a lane are run one at a time,
+ * operations of different lanes are run in parallel. Pending operations are run by priority, then in submission order:
+ * interactive operations go ahead of background operations and event building.
+ * <p>
+ * Queue depth and wait time (from submission to start) are measured per priority, see {@link #toJSON()}.
+ */
+public class NfcExecutor {
+
+    private static final String TAG = "NfcExecutor";
+
+    /**
+     * Operation requested by the application and waited for: connect, transceive, close, write...
+     */
+    public static final int PRIORITY_INTERACTIVE = 0;
+    /**
+     * Operation run on behalf of the application without user waiting for it: connection checks, polling...
+     */
+    public static final int PRIORITY_BACKGROUND = 1;
+    /**
+     * Tag event parsing and JSON building
+     */
+    public static final int PRIORITY_EVENT = 2;
+
+    private static final String[] PRIORITY_NAMES = {"interactive", "background", "event"};
+
+    private static final int POOL_SIZE = 3;
+
+    /**
+     * Idle time after which worker threads are released, in seconds
+     */
+    private static final long KEEP_ALIVE = 30;
+
+    private final ThreadPoolExecutor workers;
+
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    /**
+     * Lanes having an operation queued or running, by key
+     */
+    private final Map<String, Lane> lanes = new HashMap<>();
+
+    private final Metrics[] metrics = {new Metrics(), new Metrics(), new Metrics()};
+
+    public NfcExecutor() {
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, KEEP_ALIVE, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                runnable -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_FOREGROUND);
+                    runnable.run();
+                }, "NfcExecutor-" + threadCount.incrementAndGet()));
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Run an operation
+     *
+     * @param lane      lane of the operation, null to run it independently of any other operation
+     * @param priority  PRIORITY_*
+     * @param operation operation to run
+     */
+    public void execute(@Nullable String lane, int priority, @NonNull Runnable operation) {
+        if (priority < PRIORITY_INTERACTIVE || priority > PRIORITY_EVENT) {
+            throw new IllegalArgumentException("Invalid priority: " + priority);
+        }
+        Task task = new Task(lane, priority, nextSequence.getAndIncrement(), operation);
+        metrics[priority].queued.incrementAndGet();
+        if (lane == null) {
+            workers.execute(task);
+            return;
+        }
+        synchronized (lanes) {
+            Lane current = lanes.get(lane);
+            if (current != null) {
+                // Lane is busy: task will be scheduled when the running one is done
+                current.pending.add(task);
+                return;
+            }
+            lanes.put(lane, new Lane());
+        }
+        workers.execute(task);
+    }
+
+    private void onTaskDone(@NonNull Task task) {
+        if (task.lane == null) {
+            return;
+        }
+        Task next;
+        synchronized (lanes) {
+            Lane lane = lanes.get(task.lane);
+            next = lane != null ? lane.pending.poll() : null;
+            if (next == null) {
+                lanes.remove(task.lane);
+            }
+        }
+        if (next != null) {
+            workers.execute(next);
+        }
+    }
+
+    /**
+     * @return number of operations queued and not started yet
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Metrics m : metrics) {
+            depth += m.queued.get();
+        }
+        return depth;
+    }
+
+    /**
+     * Executor metrics: active lanes and, for each priority, queue depth and wait times
+     */
+    @NonNull
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        synchronized (lanes) {
+            json.put("activeLanes", lanes.size());
+        }
+        json.put("activeThreads", workers.getActiveCount());
+        json.put("queueDepth", getQueueDepth());
+        JSONObject priorities = new JSONObject();
+        for (int i = 0; i < metrics.length; i++) {
+            priorities.put(PRIORITY_NAMES[i], metrics[i].toJSON());
+        }
+        json.put("priorities", priorities);
+        return json;
+    }
+
+    private static class Lane {
+        final PriorityQueue<Task> pending = new PriorityQueue<>();
+    }
+
+    private static class Metrics {
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicLong started = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        /**
+         * Wait times in µs
+         */
+        final AtomicLong totalWaitTime = new AtomicLong();
+        final AtomicLong maxWaitTime = new AtomicLong();
+        volatile long lastWaitTime;
+
+        void onStarted(long waitTime) {
+            queued.decrementAndGet();
+            started.incrementAndGet();
+            totalWaitTime.addAndGet(waitTime);
+            lastWaitTime = waitTime;
+            long max;
+            do {
+                max = maxWaitTime.get();
+            } while (waitTime > max && !maxWaitTime.compareAndSet(max, waitTime));
+        }
+
+        JSONObject toJSON() throws JSONException {
+            long count = started.get();
+            JSONObject json = new JSONObject();
+            json.put("queueDepth", queued.get());
+            json.put("started", count);
+            json.put("failed", failed.get());
+            json.put("meanWaitTime", count > 0 ? totalWaitTime.get() / count : 0);
+            json.put("maxWaitTime", maxWaitTime.get());
+            json.put("lastWaitTime", lastWaitTime);
+            return json;
+        }
+    }
+
+    private class Task implements Runnable, Comparable<Task> {
+        @Nullable
+        final String lane;
+        final int priority;
+        final long sequence;
+        final long submitTime;
+        @NonNull
+        final Runnable operation;
+
+        Task(@Nullable String lane, int priority, long sequence, @NonNull Runnable operation) {
+            this.lane = lane;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.submitTime = NfcTraceBuffer.now();
+            this.operation = operation;
+        }
+
+        @Override
+        public void run() {
+            Metrics m = metrics[priority];
+            m.onStarted(NfcTraceBuffer.now() - submitTime);
+            try {
+                operation.run();
+            } catch (Throwable e) {
+                m.failed.incrementAndGet();
+                Log.e(TAG, "NFC operation failed: " + e.getMessage(), e);
+            } finally {
+                onTaskDone(this);
+            }
+        }
+
+        @Override
+        public int compareTo(@NonNull Task other) {
+            if (priority != other.priority) {
+                return priority < other.priority ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
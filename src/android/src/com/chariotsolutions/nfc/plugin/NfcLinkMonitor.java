@@ -0,0 +1,242 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Presence heartbeat and link quality of a tag session.
+ * <p>
+ * The session is probed at a fixed interval with its cheapest presence check (see {@link NfcSession#probe()}).
+ * Probes are run on the session lane with background priority, so they never run during an exchange
+ * and never delay an interactive request. The listener is told about state transitions and about
+ * significant changes of the link quality score.
+ * <p>
+ * Link quality is a score from 0 to 100 computed from smoothed probe latency and probe failure rate.
+ */
+public class NfcLinkMonitor {
+
+    private static final String TAG = "NfcLinkMonitor";
+
+    public static final String STATE_PRESENT = "present";
+    /**
+     * Last probe failed, the tag may be back on next probe
+     */
+    public static final String STATE_UNSTABLE = "unstable";
+    /**
+     * Tag lost: a new connection is required. Monitor is stopped.
+     */
+    public static final String STATE_LOST = "lost";
+    /**
+     * Monitor stopped by the application or because the session has been closed
+     */
+    public static final String STATE_STOPPED = "stopped";
+
+    public static final long DEFAULT_INTERVAL = 500;
+    private static final long MIN_INTERVAL = 50;
+    /**
+     * Consecutive probe failures after which the tag is lost
+     */
+    private static final int LOST_THRESHOLD = 3;
+    /**
+     * Probe latency giving the best quality score, in µs
+     */
+    private static final long REFERENCE_LATENCY = 15000;
+    /**
+     * Quality changes smaller than this are not reported
+     */
+    private static final int QUALITY_REPORT_STEP = 5;
+    /**
+     * Smoothing factors of the latency and failure rate moving averages
+     */
+    private static final double LATENCY_ALPHA = 0.25;
+    private static final double FAILURE_ALPHA = 0.2;
+
+    public interface Listener {
+        /**
+         * Called on the session lane after a state transition or a significant link quality change
+         *
+         * @param last true when the monitor is stopped, no more status will be reported
+         */
+        void onLinkStatus(@NonNull NfcLinkMonitor monitor, boolean last);
+    }
+
+    /**
+     * Timer shared by all monitors. Only the scheduling is done on this thread, probes are run by the sessions.
+     */
+    private static final ScheduledThreadPoolExecutor timer = createTimer();
+
+    @NonNull
+    private final NfcSession session;
+    private final long interval;
+    @NonNull
+    private final Listener listener;
+
+    private final AtomicBoolean probePending = new AtomicBoolean();
+    @Nullable
+    private volatile ScheduledFuture<?> future;
+
+    private volatile String state = STATE_PRESENT;
+    private volatile int quality = 100;
+    private int reportedQuality = 100;
+    private double latency = -1;
+    private double failureRate = 0;
+    private int consecutiveFailures = 0;
+    private long probeCount = 0;
+    private long failureCount = 0;
+
+    /**
+     * @param interval probe interval in ms
+     */
+    public NfcLinkMonitor(@NonNull NfcSession session, long interval, @NonNull Listener listener) {
+        this.session = session;
+        this.interval = Math.max(MIN_INTERVAL, interval);
+        this.listener = listener;
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    public synchronized void start() {
+        if (future == null) {
+            future = timer.scheduleWithFixedDelay(this::tick, 0, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop probing and report {@link #STATE_STOPPED}
+     */
+    public void stop() {
+        if (cancel()) {
+            state = STATE_STOPPED;
+            listener.onLinkStatus(this, true);
+        }
+    }
+
+    /**
+     * Stop probing without reporting, when the listener is gone
+     *
+     * @return true if the monitor was running
+     */
+    public synchronized boolean cancel() {
+        if (future == null || future.isCancelled()) {
+            return false;
+        }
+        future.cancel(false);
+        state = STATE_STOPPED;
+        return true;
+    }
+
+    private void tick() {
+        // Skip this tick if the previous probe is still queued behind session I/O
+        if (!probePending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            session.execute(NfcExecutor.PRIORITY_BACKGROUND, this::probe);
+        } catch (RejectedExecutionException e) {
+            // Session closed
+            probePending.set(false);
+            stop();
+        }
+    }
+
+    private void probe() {
+        try {
+            if (future == null || future.isCancelled()) {
+                return;
+            }
+            long startTime = NfcTraceBuffer.now();
+            boolean present;
+            try {
+                present = session.probe();
+            } catch (Throwable e) {
+                Log.d(TAG, "Probe failed: " + e.getMessage());
+                present = false;
+            }
+            onProbe(present, NfcTraceBuffer.now() - startTime);
+        } finally {
+            probePending.set(false);
+        }
+    }
+
+    private void onProbe(boolean present, long probeLatency) {
+        String previousState = state;
+        probeCount++;
+        failureRate = failureRate * (1 - FAILURE_ALPHA) + (present ? 0 : FAILURE_ALPHA);
+        if (present) {
+            consecutiveFailures = 0;
+            latency = latency < 0 ? probeLatency : latency * (1 - LATENCY_ALPHA) + probeLatency * LATENCY_ALPHA;
+            state = STATE_PRESENT;
+        } else {
+            failureCount++;
+            consecutiveFailures++;
+            state = consecutiveFailures >= LOST_THRESHOLD ? STATE_LOST : STATE_UNSTABLE;
+        }
+        quality = computeQuality();
+
+        boolean lost = STATE_LOST.equals(state);
+        if (lost) {
+            cancel();
+        }
+        if (probeCount == 1 || !state.equals(previousState) || Math.abs(quality - reportedQuality) >= QUALITY_REPORT_STEP) {
+            reportedQuality = quality;
+            listener.onLinkStatus(this, lost);
+        }
+    }
+
+    private int computeQuality() {
+        if (STATE_LOST.equals(state)) {
+            return 0;
+        }
+        double latencyFactor = latency <= REFERENCE_LATENCY ? 1 : REFERENCE_LATENCY / latency;
+        return (int) Math.round(100 * (1 - failureRate) * latencyFactor);
+    }
+
+    @NonNull
+    public NfcSession getSession() {
+        return session;
+    }
+
+    @NonNull
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * @return link quality score from 0 (lost) to 100
+     */
+    public int getQuality() {
+        return quality;
+    }
+
+    @NonNull
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("sessionId", session.getId());
+        json.put("state", state);
+        json.put("quality", quality);
+        json.put("latency", Math.max(0, Math.round(latency)));
+        json.put("failureRate", Math.round(failureRate * 1000) / 1000.0);
+        json.put("probes", probeCount);
+        json.put("failures", failureCount);
+        return json;
+    }
+}
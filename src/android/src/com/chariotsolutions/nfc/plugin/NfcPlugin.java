@@ -22,7 +22,6 @@ import android.widget.Toast;
 
 import com.iotize.android.communication.client.impl.EncryptionAlgo;
 import com.iotize.android.communication.client.impl.TapClient;
-import com.iotize.android.communication.client.impl.protocol.ProtocolFactory;
 import com.iotize.android.core.util.Helper;
 import com.iotize.android.device.device.impl.IoTizeDevice;
 
@@ -36,12 +35,16 @@ import org.json.JSONObject;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.reactivex.annotations.NonNull;
 import io.reactivex.annotations.Nullable;
@@ -68,40 +71,113 @@ public class NfcPlugin extends CordovaPlugin {
     private static final String TAG_DEFAULT = "tag";
 
     private static final String READER_MODE = "readerMode";
+    private static final String DISABLE_READER_MODE = "disableReaderMode";
+    private static final String BEGIN_SESSION_FROM_TECH = "beginSessionFromTech";
+    private static final String END_SESSION = "endSession";
 
     // TagTechnology IsoDep, NfcA, NfcB, NfcV, NfcF, MifareClassic, MifareUltralight
     private static final String CONNECT_TAP = "connect";
     private static final String CONNECT_RAW = "connectRaw";
     private static final String CLOSE = "close";
     private static final String TRANSCEIVE_TAP = "transceiveTap";
+    private static final String TRANSCEIVE_TAP_BATCH = "transceiveTapBatch";
     private static final String TRANSCEIVE = "transceive";
     private static final String CHECK_TAP_CONNECTION = "checkTapConnection";
+    private static final String GET_STATS = "getStats";
+    private static final String GET_TRACE = "getTrace";
+    private static final String GET_SESSIONS = "getSessions";
+    private static final String SELECT_SESSION = "selectSession";
+    private static final String SET_HEX_RESULT_ENABLED = "setHexResultEnabled";
+    private static final String SET_NDEF_ENCODING = "setNdefEncoding";
+    private static final String CANCEL = "cancel";
+    private static final String START_HEARTBEAT = "startHeartbeat";
+    private static final String STOP_HEARTBEAT = "stopHeartbeat";
+    private static final String CLEAR_TAP_SESSIONS = "clearTapSessions";
+    private static final String CREATE_TAP_DEVICE = "createTapDevice";
+    private static final String SET_DISCOVERY_FILTER = "setDiscoveryFilter";
+    private static final String GET_EVENTS_SINCE = "getEventsSince";
+    private static final String SUBSCRIBE = "subscribe";
+    private static final String UNSUBSCRIBE = "unsubscribe";
+    private static final String SET_EVENT_DETAIL = "setEventDetail";
+    private static final String GET_TAG_DETAILS = "getTagDetails";
+
+    private static final String TAG_DETAILS_NDEF = "ndef";
+    private static final String TAG_DETAILS_MESSAGE = "message";
+    private static final String TAG_DETAILS_CAPABILITIES = "capabilities";
+
+    /**
+     * Maximum number of discovered Taps waiting for createTapDevice
+     */
+    private static final int MAX_PENDING_TAP_DEVICES = 8;
 
     private static final String NFC_TAP_DEVICE = "nfc-tap-device";
+    private static final String NFC_TAP_DEVICE_DISCOVERED = "nfc-tap-device-discovered";
+    private static final String NFC_TAP_DEVICE_ERROR = "nfc-tap-device-error";
     private static final String PREF_ENABLE_TAP_DEVICE_DISCOVERY = "EnableNFCTapDeviceDiscovery";
     private static final String PREF_TAP_DEVICE_MIME_TYPE = "NFCTapDeviceMimeType";
     private static final String PREF_ENABLE_NFC_PAIRING = "EnableNFCPairing";
     private static final String PREF_ENABLE_ENCRYPTION_WITH_NFC = "EnableEncryptionWithNFC";
     private static final String PREF_NFC_PAIRING_DONE_TOAST_MESSAGE = "NFCParingDoneToastMessage";
+    private static final String PREF_NFC_TAP_SESSION_TIMEOUT = "NFCTapSessionTimeout";
+    private static final String PREF_NFC_TAP_DEVICE_CREATION = "NFCTapDeviceCreation";
+    private static final String PREF_NFC_DISCOVERY_FILTER = "NFCDiscoveryFilter";
+    private static final String PREF_NFC_DISCOVERY_WINDOW = "NFCDiscoveryWindow";
+    private static final String PREF_NFC_EVENT_RETENTION = "NFCEventRetention";
+    private static final String PREF_NFC_EVENT_DETAIL = "NFCEventDetail";
+    /**
+     * Tap device is created before tag events are fired
+     */
+    private static final String TAP_DEVICE_CREATION_EAGER = "eager";
+    /**
+     * Tap device is created in background after the discovery event
+     */
+    private static final String TAP_DEVICE_CREATION_PARALLEL = "parallel";
+    /**
+     * Tap device is created when the application calls createTapDevice
+     */
+    private static final String TAP_DEVICE_CREATION_ON_DEMAND = "onDemand";
+    private static final String PREF_ENABLE_NFC_FAST_TRANSFER_MODE = "EnableNFCFastTransferMode";
+    private static final String PREF_ENABLE_NFC_SEGMENTED_TRANSFER = "EnableNFCSegmentedTransfer";
+    private static final String PREF_ENABLE_NFC_SINGLE_READ_RESPONSE = "EnableNFCSingleReadResponse";
+    private static final String PREF_ENABLE_NFC_TAG_PROFILES = "EnableNFCTagProfiles";
+    private static final String PREF_ENABLE_NFC_TRACE = "EnableNFCTrace";
+    private static final String PREF_ENABLE_NFC_ADDRESSED_MODE = "EnableNFCAddressedMode";
+    private static final String PREF_ENABLE_NFC_HEX_RESULTS = "EnableNFCHexResults";
+    private static final String PREF_NFC_NDEF_ENCODING = "NFCNdefEncoding";
     private static final String REGISTER_NFC_TAP_DEVICE = "registerTapDevice";
     private static final String SET_TAP_DEVICE_DISCOVERY_ENABLED = "setTapDeviceDiscoveryEnabled";
     private static final String ANDROID_NFC_TECH_CLASS_PASS = "android.nfc.tech.";
     private static final String DEFAULT_NFC_TECH_CLASS_PASS = ANDROID_NFC_TECH_CLASS_PASS + "NfcV";
 
-    @Nullable
-    private TagTechnology tagTechnology = null;
-
     @NonNull
     private String _lastTechName = DEFAULT_NFC_TECH_CLASS_PASS;
 
-    @Nullable
-    private Class<?> tagTechnologyClass;
+    /**
+     * Maximum number of tag sessions kept open
+     */
+    private static final int MAX_SESSIONS = 16;
 
-    @Nullable
-    private Tag lastTag;
+    /**
+     * Tag sessions by session id (tag UID)
+     */
+    private final Map<String, NfcSession> sessions = new LinkedHashMap<>();
 
+    /**
+     * Session used by tag technology functions when no session id is given
+     */
     @Nullable
-    private String lastTechName;
+    private volatile NfcSession currentSession;
+
+    /**
+     * Executor of NFC I/O and tag event building
+     */
+    private final NfcExecutor nfcExecutor = new NfcExecutor();
+
+    /**
+     * Deadline and cancellation tokens of the pending transceive requests, by request id
+     */
+    private final Map<String, NfcRequestToken> requestTokens = new ConcurrentHashMap<>();
+    private final AtomicLong nextRequestId = new AtomicLong();
 
     private static final String CHANNEL = "channel";
 
@@ -121,18 +197,70 @@ public class NfcPlugin extends CordovaPlugin {
     private long savedIntentTime = 0;
 
     private CallbackContext readerModeCallback;
+    @NonNull
+    private volatile ReaderModeOptions readerModeOptions = ReaderModeOptions.none();
+    private volatile int readerModeFlags;
+    /**
+     * Last tag discovered in reader mode, used instead of the intent tag while reader mode is enabled
+     */
+    @Nullable
+    private volatile Tag readerModeTag;
+    /**
+     * True once the tag of a single result reader mode session (beginSessionFromTech) has been taken
+     */
+    private final AtomicBoolean readerModeTagTaken = new AtomicBoolean();
     @Nullable
     private CallbackContext channelCallback;
 
     @Nullable
-    private NFCProtocol nfcProtocol;
-    @Nullable
-    private IoTizeDevice mLastTapDiscovered;
+    private TapSessionCache.TapSession mLastTapDiscovered;
     @Nullable
-    private Intent mLastTapDiscoveredIntent;
+    private TagSnapshot mLastTapDiscoveredSnapshot;
 
     private boolean _isTapDeviceDiscoveryEnabled = true;
 
+    @Nullable
+    private TagProfileStore tagProfileStore;
+
+    @Nullable
+    private TapSessionCache tapSessionCache;
+
+    @Nullable
+    private NfcDiscoveryFilter discoveryFilter;
+
+    @Nullable
+    private NfcEventBuffer eventBuffer;
+
+    @Nullable
+    private NfcEventFilter eventFilter;
+
+    /**
+     * Snapshots of the tags of the summary events, see getTagDetails
+     */
+    private final TagSnapshotStore tagSnapshotStore = new TagSnapshotStore();
+
+    /**
+     * Discoveries of the Taps not created yet in on demand creation mode, by tag UID
+     */
+    private final LinkedHashMap<String, TagSnapshot> pendingTapDevices = new LinkedHashMap<String, TagSnapshot>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TagSnapshot> eldest) {
+            return size() > MAX_PENDING_TAP_DEVICES;
+        }
+    };
+
+    /**
+     * Hex string results selected at runtime, null to use the EnableNFCHexResults preference
+     */
+    @Nullable
+    private volatile Boolean hexResultEnabled;
+
+    /**
+     * Encoding of tag ids and NDEF records in events selected at runtime, null to use the NFCNdefEncoding preference
+     */
+    @Nullable
+    private volatile Util.ByteEncoding ndefEncoding;
+
     @Override
     public boolean execute(String action, JSONArray data, CallbackContext callbackContext) throws JSONException {
         try {
@@ -147,10 +275,16 @@ public class NfcPlugin extends CordovaPlugin {
 
             // the channel is set up when the plugin starts
             if (action.equalsIgnoreCase(CHANNEL)) {
-                channelCallback = callbackContext;
+                attachChannel(callbackContext);
                 return true; // short circuit
             }
 
+            if (action.equalsIgnoreCase(GET_EVENTS_SINCE)) {
+                long seq = data.isNull(0) ? 0 : data.getLong(0);
+                callbackContext.success(getEventBuffer().getSince(seq));
+                return true;
+            }
+
             if (!getNfcStatus().equals(STATUS_NFC_OK)) {
                 callbackContext.error(getNfcStatus());
                 return true; // short circuit
@@ -160,7 +294,24 @@ public class NfcPlugin extends CordovaPlugin {
 
             if (action.equalsIgnoreCase(READER_MODE)) {
                 int flags = data.getInt(0);
-                readerMode(flags, callbackContext);
+                ReaderModeOptions options = ReaderModeOptions.fromJSON(data.optJSONObject(1));
+                readerMode(flags, options, callbackContext);
+
+            } else if (action.equalsIgnoreCase(DISABLE_READER_MODE)) {
+                disableReaderMode();
+                callbackContext.success();
+
+            } else if (action.equalsIgnoreCase(BEGIN_SESSION_FROM_TECH)) {
+                // data[1] is the iOS alert message
+                String tech = data.getString(0);
+                ReaderModeOptions options = ReaderModeOptions.forTech(tech, data.optJSONObject(2));
+                readerMode(ReaderModeOptions.getTechFlags(tech), options, callbackContext);
+
+            } else if (action.equalsIgnoreCase(END_SESSION)) {
+                if (readerModeCallback != null) {
+                    disableReaderMode();
+                }
+                close(null, callbackContext);
 
             } else if (action.equalsIgnoreCase(REGISTER_MIME_TYPE)) {
                 registerMimeType(data, callbackContext);
@@ -216,16 +367,93 @@ public class NfcPlugin extends CordovaPlugin {
                 CordovaArgs args = new CordovaArgs(data); // execute is using the old signature with JSON data
 
                 byte[] command = args.getArrayBuffer(0);
-                transceiveRaw(command, callbackContext);
+                NfcRequestToken token = createRequestToken(data, 1);
+                transceiveRaw(command, token, callbackContext);
 
             } else if (action.equalsIgnoreCase(TRANSCEIVE_TAP)) {
                 CordovaArgs args = new CordovaArgs(data); // execute is using the old signature with JSON data
 
                 byte[] command = args.getArrayBuffer(0);
-                transceiveTap(command, callbackContext);
+                String sessionId = args.isNull(1) ? null : args.getString(1);
+                NfcRequestToken token = createRequestToken(data, 2);
+                transceiveTap(command, sessionId, token, callbackContext);
+
+            } else if (action.equalsIgnoreCase(TRANSCEIVE_TAP_BATCH)) {
+                CordovaArgs args = new CordovaArgs(data); // execute is using the old signature with JSON data
+
+                byte[] frames = args.getArrayBuffer(0);
+                JSONArray lengths = args.getJSONArray(1);
+                String sessionId = args.isNull(2) ? null : args.getString(2);
+                NfcRequestToken token = createRequestToken(data, 3);
+                transceiveTapBatch(frames, lengths, sessionId, token, callbackContext);
+
+            } else if (action.equalsIgnoreCase(START_HEARTBEAT)) {
+                long interval = data.optLong(0, NfcLinkMonitor.DEFAULT_INTERVAL);
+                String sessionId = data.isNull(1) ? null : data.getString(1);
+                startHeartbeat(interval, sessionId, callbackContext);
+
+            } else if (action.equalsIgnoreCase(STOP_HEARTBEAT)) {
+                String sessionId = data.isNull(0) ? null : data.getString(0);
+                stopHeartbeat(sessionId, callbackContext);
+
+            } else if (action.equalsIgnoreCase(CREATE_TAP_DEVICE)) {
+                String sessionId = data.isNull(0) ? null : data.getString(0);
+                createTapDevice(sessionId, callbackContext);
+
+            } else if (action.equalsIgnoreCase(CLEAR_TAP_SESSIONS)) {
+                getTapSessionCache().clear();
+                callbackContext.success();
+
+            } else if (action.equalsIgnoreCase(CANCEL)) {
+                String requestId = data.isNull(0) ? null : data.getString(0);
+                callbackContext.success(cancel(requestId));
 
             } else if (action.equalsIgnoreCase(CLOSE)) {
-                close(callbackContext);
+                String sessionId = data.isNull(0) ? null : data.getString(0);
+                close(sessionId, callbackContext);
+
+            } else if (action.equalsIgnoreCase(GET_SESSIONS)) {
+                getSessions(callbackContext);
+
+            } else if (action.equalsIgnoreCase(SELECT_SESSION)) {
+                selectSession(data.getString(0), callbackContext);
+
+            } else if (action.equalsIgnoreCase(SET_NDEF_ENCODING)) {
+                this.ndefEncoding = Util.ByteEncoding.fromString(data.getString(0));
+                callbackContext.success();
+
+            } else if (action.equalsIgnoreCase(SET_HEX_RESULT_ENABLED)) {
+                this.hexResultEnabled = data.getBoolean(0);
+                callbackContext.success();
+
+            } else if (action.equalsIgnoreCase(SUBSCRIBE)) {
+                JSONObject options = data.isNull(0) ? new JSONObject() : data.getJSONObject(0);
+                callbackContext.success(getEventFilter().subscribe(options));
+
+            } else if (action.equalsIgnoreCase(UNSUBSCRIBE)) {
+                String subscriptionId = data.isNull(0) ? null : data.getString(0);
+                callbackContext.success(getEventFilter().unsubscribe(subscriptionId));
+
+            } else if (action.equalsIgnoreCase(SET_EVENT_DETAIL)) {
+                getEventFilter().setDefaultDetail(data.getString(0));
+                callbackContext.success();
+
+            } else if (action.equalsIgnoreCase(GET_TAG_DETAILS)) {
+                String part = data.isNull(1) ? TAG_DETAILS_NDEF : data.getString(1);
+                getTagDetails(data.getString(0), part, callbackContext);
+
+            } else if (action.equalsIgnoreCase(SET_DISCOVERY_FILTER)) {
+                long window = data.isNull(1) ? NfcDiscoveryFilter.DEFAULT_WINDOW : data.getLong(1);
+                getDiscoveryFilter().setMode(data.getString(0), window);
+                callbackContext.success();
+
+            } else if (action.equalsIgnoreCase(GET_STATS)) {
+                getStats(callbackContext);
+
+            } else if (action.equalsIgnoreCase(GET_TRACE)) {
+                String format = data.optString(0, "json");
+                boolean clear = data.optBoolean(1, false);
+                getTrace(format, clear, callbackContext);
 
             } else if (action.equalsIgnoreCase(SET_TAP_DEVICE_DISCOVERY_ENABLED)) {
                 CordovaArgs args = new CordovaArgs(data);
@@ -252,6 +480,28 @@ public class NfcPlugin extends CordovaPlugin {
         }
     }
 
+    private void getStats(CallbackContext callbackContext) throws JSONException {
+        JSONObject stats = new JSONObject();
+        stats.put("polling", NFC5Protocol.getPollingScheduler().toJSON());
+        stats.put("executor", nfcExecutor.toJSON());
+        stats.put("discovery", getDiscoveryFilter().toJSON());
+        stats.put("events", getEventBuffer().toJSON());
+        stats.put("filter", getEventFilter().toJSON());
+        callbackContext.success(stats);
+    }
+
+    private void getTrace(String format, boolean clear, CallbackContext callbackContext) throws JSONException {
+        NfcTraceBuffer traceBuffer = NFC5Protocol.getTraceBuffer();
+        if ("binary".equalsIgnoreCase(format)) {
+            callbackContext.success(traceBuffer.toByteArray());
+        } else {
+            callbackContext.success(traceBuffer.toJSON());
+        }
+        if (clear) {
+            traceBuffer.clear();
+        }
+    }
+
     private String getNfcStatus() {
         NfcAdapter nfcAdapter = NfcAdapter.getDefaultAdapter(getActivity());
         if (nfcAdapter == null) {
@@ -263,38 +513,131 @@ public class NfcPlugin extends CordovaPlugin {
         }
     }
 
-    private void readerMode(int flags, CallbackContext callbackContext) {
-        Bundle extras = new Bundle(); // not used
+    private void readerMode(int flags, ReaderModeOptions options, CallbackContext callbackContext) {
+        readerModeFlags = flags;
+        readerModeOptions = options;
+        readerModeTag = null;
+        readerModeTagTaken.set(false);
         readerModeCallback = callbackContext;
+        enableReaderMode();
+    }
+
+    /**
+     * Enable the reader mode with the current flags and options. Called again on resume, as the platform
+     * disables the reader mode when the activity is paused.
+     */
+    private void enableReaderMode() {
+        final ReaderModeOptions options = readerModeOptions;
+        final int flags = options.applyFlags(readerModeFlags);
+        final Bundle extras = new Bundle();
+        if (options.getPresenceCheckDelay() > 0) {
+            extras.putInt(NfcAdapter.EXTRA_READER_PRESENCE_CHECK_DELAY, options.getPresenceCheckDelay());
+        }
         getActivity().runOnUiThread(() -> {
             NfcAdapter nfcAdapter = NfcAdapter.getDefaultAdapter(getActivity());
             nfcAdapter.enableReaderMode(getActivity(), callback, flags, extras);
         });
+    }
 
+    /**
+     * Disable the reader mode, tags are dispatched as intents again. Sessions are kept open.
+     */
+    private void disableReaderMode() {
+        readerModeCallback = null;
+        readerModeTag = null;
+        readerModeOptions = ReaderModeOptions.none();
+        getActivity().runOnUiThread(() -> {
+            NfcAdapter nfcAdapter = NfcAdapter.getDefaultAdapter(getActivity());
+            if (nfcAdapter != null) {
+                nfcAdapter.disableReaderMode(getActivity());
+            }
+        });
     }
 
     private NfcAdapter.ReaderCallback callback = new NfcAdapter.ReaderCallback() {
         @Override
         public void onTagDiscovered(Tag tag) {
-
-            JSONObject json;
-
-            // If the tag supports Ndef, try and return an Ndef message
-            List<String> techList = Arrays.asList(tag.getTechList());
-            if (techList.contains(Ndef.class.getName())) {
-                Ndef ndef = Ndef.get(tag);
-                json = Util.ndefToJSON(ndef);
-            } else {
-                json = Util.tagToJSON(tag);
+            final ReaderModeOptions options = readerModeOptions;
+            final CallbackContext callbackContext = readerModeCallback;
+            if (options.isSingleResult() && !readerModeTagTaken.compareAndSet(false, true)) {
+                // beginSessionFromTech: the session tag and the current session are kept until the session ends
+                Log.d(TAG, "Reader mode session already started, ignoring tag " + NfcSession.getSessionId(tag));
+                return;
             }
-
-            PluginResult result = new PluginResult(PluginResult.Status.OK, json);
-            result.setKeepCallback(true);
-            readerModeCallback.sendPluginResult(result);
-
+            readerModeTag = tag;
+            if (callbackContext == null) {
+                return;
+            }
+            if (options.getTech() != null) {
+                nfcExecutor.execute(NfcSession.getSessionId(tag), NfcExecutor.PRIORITY_BACKGROUND,
+                        () -> onReaderModeSession(tag, options, callbackContext));
+                return;
+            }
+            nfcExecutor.execute(NfcSession.getSessionId(tag), NfcExecutor.PRIORITY_EVENT, () -> {
+                // If the tag supports Ndef, try and return an Ndef message
+                JSONObject json = new TagSnapshot(null, tag, null, getNdefEncoding()).toJSON();
+
+                PluginResult result = new PluginResult(PluginResult.Status.OK, json);
+                result.setKeepCallback(true);
+                callbackContext.sendPluginResult(result);
+            });
         }
     };
 
+    /**
+     * Reader mode fast path: the discovered tag becomes the current session, connected and mailbox checked
+     * according to the options. The reader mode result is the tag JSON with the session id and state.
+     */
+    private void onReaderModeSession(Tag tag, ReaderModeOptions options, CallbackContext callbackContext) {
+        JSONObject json = new JSONObject();
+        String error = null;
+        try {
+            JSONObject tagJSON = new TagSnapshot(null, tag, null, getNdefEncoding()).toJSON();
+            Iterator<String> keys = tagJSON.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                json.put(key, tagJSON.get(key));
+            }
+            JSONObject sessionJSON = new JSONObject();
+            sessionJSON.put("id", NfcSession.getSessionId(tag));
+            sessionJSON.put("tech", options.getTech());
+            boolean connected = false;
+            try {
+                NfcSession session = this._initTag(tag, options.getTech());
+                if (options.isConnect()) {
+                    session.getProtocol().connect();
+                    setTimeout(session, options.getTimeout());
+                    connected = true;
+                    if (options.isCheckMailbox()) {
+                        sessionJSON.put("mailboxReady", session.probe());
+                    }
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Reader mode session failed: " + e.getMessage(), e);
+                error = e.getMessage() != null ? e.getMessage() : e.toString();
+                sessionJSON.put("error", error);
+            }
+            sessionJSON.put("connected", connected);
+            json.put("session", sessionJSON);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building reader mode result", e);
+        }
+        if (options.isSingleResult()) {
+            // beginSessionFromTech: the first session only is given to the callback
+            if (!callbackContext.isFinished()) {
+                if (error != null) {
+                    callbackContext.error(error);
+                } else {
+                    callbackContext.success(json);
+                }
+            }
+            return;
+        }
+        PluginResult result = new PluginResult(PluginResult.Status.OK, json);
+        result.setKeepCallback(true);
+        callbackContext.sendPluginResult(result);
+    }
+
     @NonNull
     private NFCIntentParser getIntentParser(Intent intent) {
         NFCIntentParser parser = new NFCIntentParser(intent);
@@ -306,14 +649,43 @@ public class NfcPlugin extends CordovaPlugin {
         return parser;
     }
 
-    private IoTizeDevice createTapFromIntent(Intent intent) throws Exception {
-        Context context = getActivity();
+    /**
+     * Get the Tap device of this intent: the cached Tap session if the same Tap has been discovered recently,
+     * a new paired Tap device otherwise.
+     */
+    private TapSessionCache.TapSession createTapFromIntent(Intent intent) throws Exception {
         NFCIntentParser parser = this.getIntentParser(intent);
-        ProtocolFactory nfcProtocolFactory = new NFCProtocolFactory(parser.getTag());
-        IoTizeDevice tap = IoTizeDevice.fromProtocol(nfcProtocolFactory.create(context));
+        Tag tag = parser.getTag();
 
         boolean nfcPairingEnabled = preferences.getBoolean(PREF_ENABLE_NFC_PAIRING, true);
         boolean encryptionEnabled = preferences.getBoolean(PREF_ENABLE_ENCRYPTION_WITH_NFC, false);
+        TapSessionCache cache = getTapSessionCache();
+        String sessionId = NfcSession.getSessionId(tag);
+        TapSessionCache.TapSession session = cache.get(sessionId);
+        if (session != null && session.matches(nfcPairingEnabled, encryptionEnabled)) {
+            try {
+                // Same Tap tapped again: pairing and encryption session are still valid, checked by the first exchange
+                session.getProtocol().rebind(tag);
+                session.getTap().connect();
+                cache.onReused(session);
+                Log.d(TAG, "Reusing " + session);
+                return session;
+            } catch (Exception e) {
+                Log.d(TAG, "Cannot reuse " + session + ": " + e.getMessage());
+                cache.remove(sessionId);
+            }
+        }
+        return pairTap(tag, nfcPairingEnabled, encryptionEnabled);
+    }
+
+    /**
+     * Create a new Tap device: NFC pairing and key exchange according to the settings
+     */
+    private TapSessionCache.TapSession pairTap(Tag tag, boolean nfcPairingEnabled, boolean encryptionEnabled) throws Exception {
+        Context context = getActivity();
+        NFCProtocolFactory nfcProtocolFactory = new NFCProtocolFactory(tag);
+        NFCProtocol protocol = nfcProtocolFactory.create(context);
+        IoTizeDevice tap = IoTizeDevice.fromProtocol(protocol);
         tap.connect();
         if (nfcPairingEnabled) {
             byte[] response = tap.nfcPairing();
@@ -321,33 +693,99 @@ public class NfcPlugin extends CordovaPlugin {
         if (encryptionEnabled) {
             tap.encryption(true, true);
         }
-        return tap;
+        TapSessionCache.TapSession session = new TapSessionCache.TapSession(tap, protocol, nfcPairingEnabled, encryptionEnabled);
+        getTapSessionCache().put(session);
+        return session;
+    }
+
+    /**
+     * An exchange with this tag has failed. If the tag is a Tap whose cached session has been reused and not
+     * checked yet, the Tap has probably lost its pairing and encryption session (e.g. energy harvesting Tap powered
+     * off between taps): the cached session is dropped and the Tap is paired again.
+     * The application gets the new session with a nfc-tap-device event.
+     * <p>
+     * Only I/O and protocol errors of an exchange with a tag still connected tell about the session:
+     * a cancelled or expired request, or a lost tag, keeps the cached session for the next exchange or tap.
+     */
+    private void onTapExchangeFailed(@NonNull NfcSession session, @NonNull Throwable error, @NonNull NfcRequestToken token) {
+        if (error instanceof CancellationException || token.isDone() || !session.getProtocol().isConnected()) {
+            return;
+        }
+        TapSessionCache.TapSession dropped = getTapSessionCache().onExchangeFailed(session.getId());
+        if (dropped == null) {
+            return;
+        }
+        TagSnapshot snapshot = new TagSnapshot(null, session.getTag(), null, getNdefEncoding());
+        try {
+            Log.d(TAG, "Pairing Tap " + session.getId() + " again");
+            TapSessionCache.TapSession tap = pairTap(session.getTag(),
+                    preferences.getBoolean(PREF_ENABLE_NFC_PAIRING, true),
+                    preferences.getBoolean(PREF_ENABLE_ENCRYPTION_WITH_NFC, false));
+            onTapDeviceCreated(tap, snapshot);
+        } catch (Exception e) {
+            Log.w(TAG, "Tap pairing failed: " + e.getMessage(), e);
+            fireTapDeviceErrorEvent(snapshot, e);
+        }
+    }
+
+    @NonNull
+    private synchronized TapSessionCache getTapSessionCache() {
+        if (tapSessionCache == null) {
+            tapSessionCache = new TapSessionCache(preferences.getInteger(PREF_NFC_TAP_SESSION_TIMEOUT, 60000));
+        }
+        return tapSessionCache;
+    }
+
+    @NonNull
+    private synchronized NfcDiscoveryFilter getDiscoveryFilter() {
+        if (discoveryFilter == null) {
+            long window = preferences.getInteger(PREF_NFC_DISCOVERY_WINDOW, (int) NfcDiscoveryFilter.DEFAULT_WINDOW);
+            discoveryFilter = new NfcDiscoveryFilter(nfcExecutor, NfcDiscoveryFilter.MODE_NONE, window);
+            try {
+                discoveryFilter.setMode(preferences.getString(PREF_NFC_DISCOVERY_FILTER, NfcDiscoveryFilter.MODE_NONE), window);
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, e.getMessage());
+            }
+        }
+        return discoveryFilter;
+    }
+
+    @NonNull
+    private synchronized NfcEventFilter getEventFilter() {
+        if (eventFilter == null) {
+            eventFilter = new NfcEventFilter();
+            try {
+                eventFilter.setDefaultDetail(preferences.getString(PREF_NFC_EVENT_DETAIL, NfcEventFilter.DETAIL_FULL));
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, e.getMessage());
+            }
+        }
+        return eventFilter;
+    }
+
+    @NonNull
+    private synchronized NfcEventBuffer getEventBuffer() {
+        if (eventBuffer == null) {
+            eventBuffer = new NfcEventBuffer();
+            eventBuffer.setDefaultRetention(preferences.getInteger(PREF_NFC_EVENT_RETENTION, (int) NfcEventBuffer.DEFAULT_RETENTION));
+            // Tap events are worth replaying as long as the Tap session can be reused
+            long tapRetention = preferences.getInteger(PREF_NFC_TAP_SESSION_TIMEOUT, 60000);
+            eventBuffer.setRetention(NFC_TAP_DEVICE, tapRetention);
+            eventBuffer.setRetention(NFC_TAP_DEVICE_DISCOVERED, tapRetention);
+            eventBuffer.setRetention(NFC_TAP_DEVICE_ERROR, tapRetention);
+        }
+        return eventBuffer;
     }
 
     /**
      * @param intent
      * @return true if nfc intent has been handld
      */
-    private boolean onTapDeviceDiscoveredIntent(Intent intent) {
+    private boolean onTapDeviceDiscoveredIntent(TagSnapshot snapshot) {
         try {
             Log.d(TAG, "creating tap device...");
-            IoTizeDevice tap = this.createTapFromIntent(intent);
-            mLastTapDiscovered = tap;
-            mLastTapDiscoveredIntent = intent;
-            String nfcPairingDoneUserFeedback = preferences.getString(PREF_NFC_PAIRING_DONE_TOAST_MESSAGE, "NFC pairing done!");
-            if (nfcPairingDoneUserFeedback.length() > 0) {
-                Activity activity = cordova.getActivity();
-                if (activity != null) {
-                    activity.runOnUiThread(() -> {
-                        try {
-                            Toast.makeText(activity, nfcPairingDoneUserFeedback, Toast.LENGTH_LONG).show();
-                        } catch (Throwable err) {
-                            Log.w(TAG, err.getMessage(), err);
-                        }
-                    });
-                }
-            }
-            fireTapDeviceEvent(tap, intent);
+            TapSessionCache.TapSession tap = this.createTapFromIntent(snapshot.getIntent());
+            onTapDeviceCreated(tap, snapshot);
             return true;
         } catch (Exception e) {
             Log.w(TAG, e.getMessage(), e);
@@ -356,6 +794,113 @@ public class NfcPlugin extends CordovaPlugin {
 
     }
 
+    /**
+     * Handle a Tap discovery according to the NFCTapDeviceCreation preference:
+     * create the Tap device now (eager), or fire the discovery event and then create the Tap device
+     * in background (parallel) or when the application asks for it (onDemand).
+     */
+    private void onTapDeviceDiscovered(TagSnapshot snapshot) {
+        String creationMode = preferences.getString(PREF_NFC_TAP_DEVICE_CREATION, TAP_DEVICE_CREATION_EAGER);
+        if (TAP_DEVICE_CREATION_EAGER.equalsIgnoreCase(creationMode)) {
+            onTapDeviceDiscoveredIntent(snapshot);
+            return;
+        }
+        JSONObject payload = getEventPayload(NFC_TAP_DEVICE_DISCOVERED, snapshot, true);
+        if (payload != null) {
+            sendEvent(NFC_TAP_DEVICE_DISCOVERED, payload);
+        }
+        if (TAP_DEVICE_CREATION_ON_DEMAND.equalsIgnoreCase(creationMode)) {
+            synchronized (pendingTapDevices) {
+                pendingTapDevices.put(snapshot.getId(), snapshot);
+            }
+        } else {
+            createTapDeviceAsync(snapshot, NfcExecutor.PRIORITY_BACKGROUND, null);
+        }
+    }
+
+    /**
+     * Create the Tap device of a discovered Tap not created yet (onDemand creation mode)
+     *
+     * @param sessionId tag UID, null for the last discovered Tap
+     */
+    private void createTapDevice(@Nullable String sessionId, CallbackContext callbackContext) {
+        TagSnapshot snapshot = null;
+        synchronized (pendingTapDevices) {
+            if (sessionId == null) {
+                for (Map.Entry<String, TagSnapshot> entry : pendingTapDevices.entrySet()) {
+                    sessionId = entry.getKey();
+                }
+            }
+            if (sessionId != null) {
+                snapshot = pendingTapDevices.remove(sessionId);
+            }
+        }
+        if (snapshot == null) {
+            callbackContext.error(sessionId != null ? "No pending Tap device " + sessionId : "No pending Tap device");
+            return;
+        }
+        createTapDeviceAsync(snapshot, NfcExecutor.PRIORITY_INTERACTIVE, callbackContext);
+    }
+
+    /**
+     * Create the Tap device on the tag lane. Errors are reported with a nfc-tap-device-error event.
+     *
+     * @param callbackContext callback given the Tap JSON, null if none
+     */
+    private void createTapDeviceAsync(final TagSnapshot snapshot, int priority, @Nullable final CallbackContext callbackContext) {
+        nfcExecutor.execute(snapshot.getId(), priority, () -> {
+            try {
+                Log.d(TAG, "creating tap device...");
+                TapSessionCache.TapSession tap = this.createTapFromIntent(snapshot.getIntent());
+                onTapDeviceCreated(tap, snapshot);
+                if (callbackContext != null) {
+                    callbackContext.success(buildTapJSON(tap));
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Tap device creation failed: " + e.getMessage(), e);
+                fireTapDeviceErrorEvent(snapshot, e);
+                if (callbackContext != null) {
+                    callbackContext.error(e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void onTapDeviceCreated(TapSessionCache.TapSession tap, TagSnapshot snapshot) {
+        mLastTapDiscovered = tap;
+        mLastTapDiscoveredSnapshot = snapshot;
+        String nfcPairingDoneUserFeedback = preferences.getString(PREF_NFC_PAIRING_DONE_TOAST_MESSAGE, "NFC pairing done!");
+        if (nfcPairingDoneUserFeedback.length() > 0) {
+            Activity activity = cordova.getActivity();
+            if (activity != null) {
+                activity.runOnUiThread(() -> {
+                    try {
+                        Toast.makeText(activity, nfcPairingDoneUserFeedback, Toast.LENGTH_LONG).show();
+                    } catch (Throwable err) {
+                        Log.w(TAG, err.getMessage(), err);
+                    }
+                });
+            }
+        }
+        fireTapDeviceEvent(tap, snapshot);
+    }
+
+    private void fireTapDeviceErrorEvent(TagSnapshot snapshot, Exception error) {
+        JSONObject payload = getEventPayload(NFC_TAP_DEVICE_ERROR, snapshot, false);
+        if (payload == null) {
+            return;
+        }
+        try {
+            JSONObject event = new JSONObject();
+            event.put("type", NFC_TAP_DEVICE_ERROR);
+            event.put("tag", payload);
+            event.put("error", error.getMessage());
+            sendEvent(event);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error sending NFC event through the channel", e);
+        }
+    }
+
     private void registerDefaultTag(CallbackContext callbackContext) {
         addTagFilter();
         restartNfc();
@@ -364,11 +909,10 @@ public class NfcPlugin extends CordovaPlugin {
             long tagOld = System.currentTimeMillis()-savedIntentTime;
             if (tagOld < 3000) {
                 if (NfcAdapter.ACTION_NDEF_DISCOVERED.equals(savedIntent.getAction())) {
-                    Tag tag = savedIntent.getParcelableExtra(NfcAdapter.EXTRA_TAG);
-                    if (tag != null ) {
+                    TagSnapshot snapshot = TagSnapshot.fromIntent(savedIntent, getNdefEncoding());
+                    if (snapshot != null) {
                         Log.i(TAG, "registerDefaultTag() fire recently tapped tag (" + tagOld + "ms ago)");
-                        Parcelable[] messages = savedIntent.getParcelableArrayExtra((NfcAdapter.EXTRA_NDEF_MESSAGES));
-                        fireTagEvent(tag, messages);
+                        fireTagEvent(snapshot);
                         savedIntentTime = 0;
                     }
                 }
@@ -405,7 +949,7 @@ public class NfcPlugin extends CordovaPlugin {
 
         startNfc();
         if (!recycledIntent()) {
-            parseMessage();
+            parseMessage(getIntent());
         }
         callbackContext.success();
     }
@@ -433,7 +977,7 @@ public class NfcPlugin extends CordovaPlugin {
         Log.d(TAG, "registerTapDevice");
         if (mLastTapDiscovered != null) {
             Log.d(TAG, "a tap was detected before function call registerTapDevice");
-            fireTapDeviceEvent(mLastTapDiscovered, mLastTapDiscoveredIntent);
+            fireTapDeviceEvent(mLastTapDiscovered, mLastTapDiscoveredSnapshot);
         }
         callbackContext.success();
     }
@@ -477,13 +1021,39 @@ public class NfcPlugin extends CordovaPlugin {
         }
 
         Tag tag = savedIntent.getParcelableExtra(NfcAdapter.EXTRA_TAG);
+        Object message = data.get(0);
+        if (message instanceof String && !((String) message).startsWith("[")) {
+            // Encoded NDEF message sent as an ArrayBuffer
+            byte[] messageBytes = new CordovaArgs(data).getArrayBuffer(0);
+            try {
+                writeNdefMessage(new NdefMessage(messageBytes), tag, callbackContext);
+            } catch (FormatException e) {
+                callbackContext.error("Invalid NDEF message: " + e.getMessage());
+            }
+            return;
+        }
         NdefRecord[] records = Util.jsonToNdefRecords(data.getString(0));
         writeNdefMessage(new NdefMessage(records), tag, callbackContext);
     }
 
+    @NonNull
+    private Util.ByteEncoding getNdefEncoding() {
+        Util.ByteEncoding encoding = this.ndefEncoding;
+        if (encoding == null) {
+            try {
+                encoding = Util.ByteEncoding.fromString(preferences.getString(PREF_NFC_NDEF_ENCODING, "array"));
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, e.getMessage());
+                encoding = Util.ByteEncoding.ARRAY;
+            }
+            this.ndefEncoding = encoding;
+        }
+        return encoding;
+    }
+
     private void writeNdefMessage(final NdefMessage message, final Tag tag,
                                   final CallbackContext callbackContext) {
-        cordova.getThreadPool().execute(() -> {
+        nfcExecutor.execute(NfcSession.getSessionId(tag), NfcExecutor.PRIORITY_INTERACTIVE, () -> {
             try {
                 Ndef ndef = Ndef.get(tag);
                 if (ndef != null) {
@@ -678,86 +1248,67 @@ public class NfcPlugin extends CordovaPlugin {
         return techLists.toArray(new String[0][0]);
     }
 
-    private void parseMessage() {
-        cordova.getThreadPool().execute(() -> {
-            try {
-                Log.d(TAG, "parseMessage " + getIntent());
-                Intent intent = getIntent();
-                String action = intent.getAction();
-                Log.d(TAG, "action " + action);
-                if (action == null) {
-                    return;
-                }
+    /**
+     * Submit a discovery intent to the discovery filter. Intents are parsed one at a time, in order,
+     * and repeated discoveries of the same tag are debounced or coalesced according to the NFCDiscoveryFilter preference.
+     */
+    private void parseMessage(final Intent intent) {
+        Tag tag = intent.getParcelableExtra(NfcAdapter.EXTRA_TAG);
+        getDiscoveryFilter().submit(tag != null ? NfcSession.getSessionId(tag) : null, () -> handleDiscoveryIntent(intent));
+    }
 
-                final Tag tag = intent.getParcelableExtra(NfcAdapter.EXTRA_TAG);
-                if (tag != null) {
-                    Parcelable[] messages = intent.getParcelableArrayExtra((NfcAdapter.EXTRA_NDEF_MESSAGES));
+    private void handleDiscoveryIntent(Intent intent) {
+        try {
+            Log.d(TAG, "parseMessage " + intent);
+            String action = intent.getAction();
+            Log.d(TAG, "action " + action);
+            if (action == null) {
+                return;
+            }
 
+            // Tag is parsed once, all the events of this discovery share the same snapshot
+            final TagSnapshot snapshot = TagSnapshot.fromIntent(intent, getNdefEncoding());
+            if (snapshot != null) {
 
-                    if (isTapDeviceDiscoveryEnabled() && isIoTizeTag(tag)) {
-                        onTapDeviceDiscoveredIntent(intent);
-                    }
+                if (isTapDeviceDiscoveryEnabled() && snapshot.isIoTizeTag()) {
+                    onTapDeviceDiscovered(snapshot);
+                }
 
-                    if (action.equals(NfcAdapter.ACTION_NDEF_DISCOVERED)) {
-                        Ndef ndef = Ndef.get(tag);
-                        fireNdefEvent(NDEF, ndef, messages);
-                        savedIntent = intent;
-                        savedIntentTime = System.currentTimeMillis();
-                        fireTagEvent(tag, messages);
-
-                    } else if (action.equals(NfcAdapter.ACTION_TECH_DISCOVERED)) {
-                        this._fireTagEventsFromTechList(tag, messages);
-                        fireTagEvent(tag, messages);
-                    } else if (action.equals(NfcAdapter.ACTION_TAG_DISCOVERED)) {
-                        fireTagEvent(tag, messages);
-                    }
+                if (action.equals(NfcAdapter.ACTION_NDEF_DISCOVERED)) {
+                    fireNdefEvent(NDEF, snapshot);
+                    savedIntent = intent;
+                    savedIntentTime = System.currentTimeMillis();
+                    fireTagEvent(snapshot);
+
+                } else if (action.equals(NfcAdapter.ACTION_TECH_DISCOVERED)) {
+                    this._fireTagEventsFromTechList(snapshot);
+                    fireTagEvent(snapshot);
+                } else if (action.equals(NfcAdapter.ACTION_TAG_DISCOVERED)) {
+                    fireTagEvent(snapshot);
                 }
             }
-            catch (RuntimeException err) {
-                Log.w(TAG, "Unhandled error with parseMessage()", err);
-            }
+        }
+        catch (RuntimeException err) {
+            Log.w(TAG, "Unhandled error with parseMessage()", err);
+        }
 
+        // Do not clear an intent received since
+        if (getIntent() == intent) {
             setIntent(new Intent());
-        });
+        }
     }
 
-    private void _fireTagEventsFromTechList(@NonNull Tag tag, @NonNull Parcelable[] messages) {
-        for (String tagTech : tag.getTechList()) {
+    private void _fireTagEventsFromTechList(@NonNull TagSnapshot snapshot) {
+        for (String tagTech : snapshot.getTechList()) {
             Log.d(TAG, tagTech);
             if (tagTech.equals(NdefFormatable.class.getName())) {
-                fireNdefFormatableEvent(tag);
+                fireNdefFormatableEvent(snapshot);
             } else if (tagTech.equals(Ndef.class.getName())) { //
-                this._fireNdefEvent(tag, messages);
+                fireNdefEvent(NDEF, snapshot);
             }
         }
     }
 
-    private void _fireNdefEvent(@NonNull Tag tag, @NonNull Parcelable[] messages) {
-        Ndef ndef = Ndef.get(tag);
-        fireNdefEvent(NDEF, ndef, messages);
-    }
-
-    private boolean isIoTizeTag(@Nullable Tag tag) {
-        if (tag == null) {
-            return false;
-        }
-        boolean hasNfcV = Arrays.stream(tag.getTechList()).anyMatch(s -> s.endsWith("NfcV"));
-        if (!hasNfcV) {
-            return false;
-        }
-        Ndef ndef = Ndef.get(tag);
-        if (ndef == null) {
-            return false;
-        }
-        NdefMessage ndefMessages = ndef.getCachedNdefMessage();
-        if (ndefMessages == null) {
-            return false;
-        }
-        NdefRecord[] records = ndefMessages.getRecords();
-
-        return records.length >= 4; // TODO improve condition
-    }
-
     private void sendEvent(String type, JSONObject tag, JSONObject tap) {
         try {
             JSONObject event = new JSONObject();
@@ -783,31 +1334,65 @@ public class NfcPlugin extends CordovaPlugin {
     }
 
     // Send the event data through a channel so the JavaScript side can fire the event
+    // Events sent while the channel is not attached are flushed when it attaches
     private void sendEvent(JSONObject event) {
-        PluginResult result = new PluginResult(PluginResult.Status.OK, event);
-        result.setKeepCallback(true);
-        if (channelCallback != null) {
-            channelCallback.sendPluginResult(result);
+        NfcEventBuffer buffer = getEventBuffer();
+        synchronized (buffer) {
+            try {
+                buffer.add(event, channelCallback != null);
+            } catch (JSONException e) {
+                Log.e(TAG, "Error numbering NFC event", e);
+            }
+            if (channelCallback != null) {
+                PluginResult result = new PluginResult(PluginResult.Status.OK, event);
+                result.setKeepCallback(true);
+                channelCallback.sendPluginResult(result);
+            }
+        }
+    }
+
+    /**
+     * Set the channel and send it the events fired while it was not attached, in order, in one batch
+     */
+    private void attachChannel(CallbackContext callbackContext) {
+        NfcEventBuffer buffer = getEventBuffer();
+        synchronized (buffer) {
+            channelCallback = callbackContext;
+            JSONArray pending = buffer.takePending();
+            if (pending.length() == 0) {
+                return;
+            }
+            Log.d(TAG, "Flushing " + pending.length() + " NFC events to the channel");
+            try {
+                JSONObject batch = new JSONObject();
+                batch.put("events", pending);
+                PluginResult result = new PluginResult(PluginResult.Status.OK, batch);
+                result.setKeepCallback(true);
+                callbackContext.sendPluginResult(result);
+            } catch (JSONException e) {
+                Log.e(TAG, "Error sending NFC events through the channel", e);
+            }
         }
     }
 
-    private void fireNdefEvent(String type, Ndef ndef, Parcelable[] messages) {
+    private void fireNdefEvent(String type, TagSnapshot snapshot) {
         try {
-            JSONObject json = buildNdefJSON(ndef, messages);
-            sendEvent(type, json);
+            JSONObject payload = getEventPayload(type, snapshot, true);
+            if (payload != null) {
+                sendEvent(type, payload);
+            }
         } catch (Throwable e) {
             Log.w(TAG, "Failed to fire NDef event", e);
         }
     }
 
-    private void fireTapDeviceEvent(IoTizeDevice tap, Intent intent) {
+    private void fireTapDeviceEvent(TapSessionCache.TapSession tap, TagSnapshot snapshot) {
         try {
             Log.d(TAG, "fireTapDeviceEvent " + tap);
-            Tag tag = intent.getParcelableExtra(NfcAdapter.EXTRA_TAG);
-            Ndef ndef = Ndef.get(tag);
-            Parcelable[] messages = intent.getParcelableArrayExtra((NfcAdapter.EXTRA_NDEF_MESSAGES));
-
-            sendEvent(NFC_TAP_DEVICE, buildNdefJSON(ndef, messages), buildTapJSON(tap));
+            JSONObject payload = getEventPayload(NFC_TAP_DEVICE, snapshot, true);
+            if (payload != null) {
+                sendEvent(NFC_TAP_DEVICE, payload, buildTapJSON(tap));
+            }
         } catch (JSONException e) {
             Log.e(TAG, e.getMessage(), e);
         } catch (Throwable e) {
@@ -815,9 +1400,11 @@ public class NfcPlugin extends CordovaPlugin {
         }
     }
 
-    private JSONObject buildTapJSON(IoTizeDevice tap) throws JSONException {
+    private JSONObject buildTapJSON(TapSessionCache.TapSession session) throws JSONException {
+        IoTizeDevice tap = session.getTap();
         JSONObject tapInfo = new JSONObject();
         tapInfo.put("nfcPairingDone", true); // TODO
+        tapInfo.put("sessionReused", session.isReused());
         JSONObject encryptionJSON = new JSONObject();
         boolean encryptionEnabled = false;
         if (tap.isEncryptionEnabled()) {
@@ -852,49 +1439,77 @@ public class NfcPlugin extends CordovaPlugin {
         return tapInfo;
     }
 
-    private void fireNdefFormatableEvent(Tag tag) {
-        sendEvent(NDEF_FORMATABLE, Util.tagToJSON(tag));
+    private void fireNdefFormatableEvent(TagSnapshot snapshot) {
+        JSONObject payload = getEventPayload(NDEF_FORMATABLE, snapshot, false);
+        if (payload != null) {
+            sendEvent(NDEF_FORMATABLE, payload);
+        }
     }
 
-    private void fireTagEvent(Tag tag, Parcelable[] messages) {
-        if (Arrays.asList(tag.getTechList()).contains(Ndef.class.getName())) {
-            sendEvent(TAG_DEFAULT, buildNdefJSON(Ndef.get(tag), messages));
-        }
-        else {
-            sendEvent(TAG_DEFAULT, Util.tagToJSON(tag));
+    private void fireTagEvent(TagSnapshot snapshot) {
+        JSONObject payload = getEventPayload(TAG_DEFAULT, snapshot, snapshot.hasTech(Ndef.class));
+        if (payload != null) {
+            sendEvent(TAG_DEFAULT, payload);
         }
     }
 
     /**
-     * May throw a java.lang.SecurityException error if Tag is out of date (tested on Android 13)
+     * Details of the tag of a summary event
+     *
+     * @param handle handle of the summary event
+     * @param part   'ndef' for the full NDEF JSON, 'message' for the NDEF message only,
+     *               'capabilities' for NDEF type, maxSize, isWritable and canMakeReadOnly
      */
-    private JSONObject buildNdefJSON(Ndef ndef, Parcelable[] messages) throws SecurityException {
-
-        JSONObject json = Util.ndefToJSON(ndef);
-
-        // ndef is null for peer-to-peer
-        // ndef and messages are null for ndef format-able
-        if (ndef == null && messages != null) {
-
+    private void getTagDetails(String handle, String part, CallbackContext callbackContext) {
+        final TagSnapshot snapshot = tagSnapshotStore.get(handle);
+        if (snapshot == null) {
+            callbackContext.error("Unknown or expired tag handle " + handle);
+            return;
+        }
+        nfcExecutor.execute(snapshot.getId(), NfcExecutor.PRIORITY_INTERACTIVE, () -> {
             try {
-
-                if (messages.length > 0) {
-                    NdefMessage message = (NdefMessage) messages[0];
-                    json.put("ndefMessage", Util.messageToJSON(message));
-                    // guessing type, would prefer a more definitive way to determine type
-                    json.put("type", "NDEF Push Protocol");
-                }
-
-                if (messages.length > 1) {
-                    Log.wtf(TAG, "Expected one ndefMessage but found " + messages.length);
+                if (TAG_DETAILS_MESSAGE.equalsIgnoreCase(part)) {
+                    JSONObject json = new JSONObject();
+                    json.put("ndefMessage", snapshot.getNdefMessageJSON());
+                    callbackContext.success(json);
+                } else if (TAG_DETAILS_CAPABILITIES.equalsIgnoreCase(part)) {
+                    callbackContext.success(snapshot.getCapabilitiesJSON());
+                } else if (TAG_DETAILS_NDEF.equalsIgnoreCase(part)) {
+                    callbackContext.success(snapshot.toJSON());
+                } else {
+                    callbackContext.error("Unknown tag details \"" + part + "\". Expecting \"ndef\", \"message\" or \"capabilities\"");
                 }
-
-            } catch (JSONException e) {
-                // shouldn't happen
-                Log.e(Util.TAG, "Failed to convert ndefMessage into json", e);
+            } catch (Throwable e) {
+                Log.w(TAG, "Cannot get tag details of " + handle + ": " + e.getMessage(), e);
+                callbackContext.error(e.getMessage() != null ? e.getMessage() : e.toString());
             }
+        });
+    }
+
+    /**
+     * Payload of a tag event, built at the detail level of the subscriptions (see {@link NfcEventFilter})
+     *
+     * @param ndef true for the NDEF JSON at full detail, false for the tag JSON
+     * @return the payload, null if the application has not subscribed to this event
+     */
+    @Nullable
+    private JSONObject getEventPayload(String type, TagSnapshot snapshot, boolean ndef) {
+        String detail = getEventFilter().match(type, snapshot);
+        if (detail == null) {
+            Log.d(TAG, "Event " + type + " of " + snapshot.getId() + " not subscribed");
+            return null;
+        }
+        switch (detail) {
+            case NfcEventFilter.DETAIL_ID:
+                return snapshot.getIdJSON();
+            case NfcEventFilter.DETAIL_TAG:
+                return snapshot.getTagJSON();
+            case NfcEventFilter.DETAIL_SUMMARY:
+                tagSnapshotStore.register(snapshot);
+                return snapshot.getSummaryJSON();
+            default:
+                return ndef ? snapshot.getNdefJSON() : snapshot.getTagJSON();
         }
-        return json;
     }
 
     private boolean recycledIntent() { // TODO this is a kludge, find real solution
@@ -914,6 +1529,28 @@ public class NfcPlugin extends CordovaPlugin {
         this.initializeTapDeviceListener();
     }
 
+    @Override
+    public void onReset() {
+        super.onReset();
+        // WebView reloaded: events are kept until the new page attaches the channel
+        NfcEventBuffer buffer = getEventBuffer();
+        synchronized (buffer) {
+            channelCallback = null;
+        }
+        // Subscriptions, detail level, heartbeats and reader mode belong to the previous page
+        synchronized (this) {
+            eventFilter = null;
+        }
+        synchronized (sessions) {
+            for (NfcSession session : sessions.values()) {
+                session.cancelLinkMonitor();
+            }
+        }
+        if (readerModeCallback != null) {
+            disableReaderMode();
+        }
+    }
+
     @Override
     public void onPause(boolean multitasking) {
         Log.d(TAG, "onPause " + getIntent());
@@ -929,6 +1566,9 @@ public class NfcPlugin extends CordovaPlugin {
         Log.d(TAG, "onResume " + getIntent());
         super.onResume(multitasking);
         startNfc();
+        if (readerModeCallback != null) {
+            enableReaderMode();
+        }
     }
 
     @Override
@@ -937,7 +1577,7 @@ public class NfcPlugin extends CordovaPlugin {
         super.onNewIntent(intent);
         setIntent(intent);
         savedIntent = intent;
-        parseMessage();
+        parseMessage(intent);
     }
 
     private Activity getActivity() {
@@ -963,20 +1603,16 @@ public class NfcPlugin extends CordovaPlugin {
     private void connectRaw(final String tech, final int timeout,
                             final CallbackContext callbackContext) {
         final String fullTechName = !tech.startsWith(ANDROID_NFC_TECH_CLASS_PASS) ? ANDROID_NFC_TECH_CLASS_PASS + tech : tech;
-        this.cordova.getThreadPool().execute(() -> {
+        nfcExecutor.execute(getIntentTagLane(), NfcExecutor.PRIORITY_INTERACTIVE, () -> {
             try {
                 this._lastTechName = fullTechName;
-                this._initIntentTag(fullTechName);
-
-                if (tagTechnology == null) {
-                    callbackContext.error("Tag does not support " + tech);
-                    return;
-                }
+                NfcSession session = this._initIntentTag(fullTechName);
 
+                TagTechnology tagTechnology = session.getTagTechnology();
                 if (!tagTechnology.isConnected()) {
                     tagTechnology.connect();
                 }
-                setTimeout(timeout);
+                setTimeout(session, timeout);
                 Log.d(TAG, "NFC Connection successful");
                 callbackContext.success();
             } catch (IOException ex) {
@@ -989,19 +1625,62 @@ public class NfcPlugin extends CordovaPlugin {
         });
     }
 
+    /**
+     * Probe a session at a fixed interval and report its link state and quality.
+     * Status are sent to the callback, kept until the tag is lost or the heartbeat is stopped.
+     *
+     * @param interval  probe interval in ms
+     * @param sessionId session to monitor, null for the current session
+     */
+    private void startHeartbeat(long interval, @Nullable String sessionId, final CallbackContext callbackContext) {
+        final NfcSession session = getTapSession(sessionId, callbackContext);
+        if (session == null) {
+            return;
+        }
+        if (!session.isProbeSupported()) {
+            // Without an exchange, a lost tag would be reported present forever
+            callbackContext.error("Heartbeat unsupported: no presence check for " + session.getTechName() + " without a connected Tap");
+            return;
+        }
+        NfcLinkMonitor monitor = new NfcLinkMonitor(session, interval, (linkMonitor, last) -> {
+            try {
+                PluginResult result = new PluginResult(PluginResult.Status.OK, linkMonitor.toJSON());
+                result.setKeepCallback(!last);
+                callbackContext.sendPluginResult(result);
+            } catch (JSONException e) {
+                Log.w(TAG, "Cannot send link status", e);
+            }
+        });
+        session.setLinkMonitor(monitor);
+        monitor.start();
+    }
+
+    /**
+     * @param sessionId session to stop monitoring, null for the current session
+     */
+    private void stopHeartbeat(@Nullable String sessionId, CallbackContext callbackContext) {
+        final NfcSession session = getTapSession(sessionId, callbackContext);
+        if (session == null) {
+            return;
+        }
+        session.setLinkMonitor(null);
+        callbackContext.success();
+    }
+
     private void checkTapConnection(final int timeout, final CallbackContext callbackContext) {
-        this.cordova.getThreadPool().execute(() -> {
+        final NfcSession session = currentSession;
+        if (session == null) {
+            callbackContext.success(2);
+            return;
+        }
+        session.execute(NfcExecutor.PRIORITY_BACKGROUND, () -> {
             try {
-                if (nfcProtocol == null) {
-                    callbackContext.success(2);
-                    return;
-                }
-                if (!tagTechnology.isConnected()) {
-                    if (nfcProtocol instanceof  NFC5Protocol) {
-                        ((NFC5Protocol) nfcProtocol)._connect();
+                if (!session.getTagTechnology().isConnected()) {
+                    if (session.getProtocol() instanceof  NFC5Protocol) {
+                        ((NFC5Protocol) session.getProtocol())._connect();
                     }
                     else {
-                        tagTechnology.connect();
+                        session.getTagTechnology().connect();
                     }
                 }
                 callbackContext.success(0);
@@ -1015,7 +1694,7 @@ public class NfcPlugin extends CordovaPlugin {
             } catch (Throwable e) {
                 Log.e(TAG, e.getMessage(), e);
                 try {
-                    this._close();
+                    this._close(session.getId());
                 } catch (Exception ex) {
                     Log.w(TAG, "cannot close properly", ex);
                 }
@@ -1034,18 +1713,13 @@ public class NfcPlugin extends CordovaPlugin {
     private void connectTap(final String tech, final int timeout,
                             final CallbackContext callbackContext) {
         final String fullTechName = !tech.startsWith(ANDROID_NFC_TECH_CLASS_PASS) ? ANDROID_NFC_TECH_CLASS_PASS + tech : tech;
-        this.cordova.getThreadPool().execute(() -> {
+        nfcExecutor.execute(getIntentTagLane(), NfcExecutor.PRIORITY_INTERACTIVE, () -> {
             try {
                 this._lastTechName = fullTechName;
-                this._initIntentTag(fullTechName);
+                NfcSession session = this._initIntentTag(fullTechName);
 
-                if (nfcProtocol == null) {
-                    callbackContext.error("Tag does not support " + tech);
-                    return;
-                }
-
-                nfcProtocol.connect();
-                setTimeout(timeout);
+                session.getProtocol().connect();
+                setTimeout(session, timeout);
                 Log.d(TAG, "NFC Connection successful");
                 callbackContext.success();
             } catch (IOException ex) {
@@ -1058,8 +1732,57 @@ public class NfcPlugin extends CordovaPlugin {
         });
     }
 
-    private void _initIntentTag(final String tech) throws Exception {
+    /**
+     * Get the session of the intent tag for this technology, create it if needed.
+     * The session becomes the current session.
+     */
+    @NonNull
+    private NfcSession _initIntentTag(final String tech) throws Exception {
         Log.d(TAG, "Init tag: " + tech);
+        Tag tag = getIntentTag();
+        if (tag == null) {
+            Log.e(TAG, "No Tag");
+            throw new Exception("No Tag");
+        }
+        return _initTag(tag, tech);
+    }
+
+    /**
+     * Get the session of this tag for this technology, create it if needed.
+     * The session becomes the current session.
+     */
+    @NonNull
+    private NfcSession _initTag(@NonNull Tag tag, final String tech) throws Exception {
+        NfcSession session = getSession(NfcSession.getSessionId(tag));
+        if (session != null && session.isFor(tag, tech)) {
+            Log.d(TAG, "Same tag is already initialized with tech " + tech);
+            currentSession = session;
+            return session;
+        }
+        TagTechnologyAdapter adapter = TagTechnologyAdapter.forName(tech);
+        NFCProtocol nfcProtocol = NFCProtocol.create(tag);
+        configureProtocol(nfcProtocol);
+        TagTechnology tagTechnology = adapter.get(tag);
+        if (tagTechnology == null) {
+            Log.e(TAG, "No Tag Technology");
+            throw new Exception("No Tag");
+        }
+        session = new NfcSession(tag, tech, adapter, tagTechnology, nfcProtocol, nfcExecutor);
+        putSession(session);
+        currentSession = session;
+        return session;
+    }
+
+    /**
+     * @return tag last discovered in reader mode while reader mode is enabled,
+     * tag of the current intent or of the saved intent otherwise
+     */
+    @Nullable
+    private Tag getIntentTag() {
+        Tag readerTag = readerModeTag;
+        if (readerTag != null && readerModeCallback != null) {
+            return readerTag;
+        }
         Intent intent = getIntent();
         Tag tag = null;
         if (intent != null) {
@@ -1068,45 +1791,128 @@ public class NfcPlugin extends CordovaPlugin {
         if (tag == null && savedIntent != null) {
             tag = savedIntent.getParcelableExtra(NfcAdapter.EXTRA_TAG);
         }
+        return tag;
+    }
 
-        if (tag == null) {
-            Log.e(TAG, "No Tag");
-            throw new Exception("No Tag");
+    /**
+     * @return executor lane of the intent tag session, null if there is no tag
+     */
+    @Nullable
+    private String getIntentTagLane() {
+        Tag tag = getIntentTag();
+        return tag != null ? NfcSession.getSessionId(tag) : null;
+    }
+
+    @Nullable
+    private NfcSession getSession(@NonNull String sessionId) {
+        synchronized (sessions) {
+            return sessions.get(sessionId);
         }
-        if (lastTag == tag && lastTechName != null && lastTechName.equals(tech)) {
-            Log.d(TAG, "Same tag is already initialized with tech " + tech);
-            return;
+    }
+
+    /**
+     * Add a session to the session table. A previous session of the same tag and the oldest sessions
+     * above {@link #MAX_SESSIONS} are closed.
+     */
+    private void putSession(@NonNull NfcSession session) {
+        List<NfcSession> removedSessions = new ArrayList<>();
+        synchronized (sessions) {
+            NfcSession previousSession = sessions.remove(session.getId());
+            if (previousSession != null) {
+                removedSessions.add(previousSession);
+            }
+            sessions.put(session.getId(), session);
+            Iterator<NfcSession> iterator = sessions.values().iterator();
+            while (sessions.size() > MAX_SESSIONS && iterator.hasNext()) {
+                NfcSession oldestSession = iterator.next();
+                if (oldestSession != currentSession && oldestSession != session) {
+                    iterator.remove();
+                    removedSessions.add(oldestSession);
+                }
+            }
         }
-        tagTechnologyClass = Class.forName(tech);
-        nfcProtocol = NFCProtocol.create(tag);
-        Method method = tagTechnologyClass.getMethod("get", Tag.class);
-        tagTechnology = (TagTechnology) method.invoke(null, tag);
-        if (tagTechnology == null) {
-            Log.e(TAG, "No Tag Technology");
-            throw new Exception("No Tag");
+        for (NfcSession removedSession : removedSessions) {
+            try {
+                removedSession.close();
+            } catch (Exception e) {
+                Log.w(TAG, "Cannot close session " + removedSession.getId() + " properly", e);
+            }
+        }
+    }
+
+    /**
+     * Apply plugin preferences to a newly created protocol
+     */
+    private void configureProtocol(@NonNull NFCProtocol protocol) {
+        if (protocol instanceof NFC5Protocol) {
+            NFC5Protocol nfc5Protocol = (NFC5Protocol) protocol;
+            NFC5Protocol.getTraceBuffer().setEnabled(preferences.getBoolean(PREF_ENABLE_NFC_TRACE, true));
+            nfc5Protocol.setFastTransferEnabled(preferences.getBoolean(PREF_ENABLE_NFC_FAST_TRANSFER_MODE, false));
+            nfc5Protocol.setSegmentedTransferEnabled(preferences.getBoolean(PREF_ENABLE_NFC_SEGMENTED_TRANSFER, false));
+            nfc5Protocol.setSingleReadResponseEnabled(preferences.getBoolean(PREF_ENABLE_NFC_SINGLE_READ_RESPONSE, false));
+            try {
+                nfc5Protocol.setAddressedModeEnabled(preferences.getBoolean(PREF_ENABLE_NFC_ADDRESSED_MODE, false));
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, e.getMessage());
+            }
+            if (preferences.getBoolean(PREF_ENABLE_NFC_TAG_PROFILES, true)) {
+                nfc5Protocol.setTagProfileStore(getTagProfileStore());
+            }
+        }
+    }
+
+    @NonNull
+    private synchronized TagProfileStore getTagProfileStore() {
+        if (tagProfileStore == null) {
+            tagProfileStore = new TagProfileStore(getActivity().getApplicationContext());
         }
-        lastTag = tag;
-        lastTechName = tech;
+        return tagProfileStore;
     }
 
-    private void setTimeout(int timeout) {
+    private void setTimeout(@NonNull NfcSession session, int timeout) {
         if (timeout < 0) {
             return;
         }
-        if (nfcProtocol != null) {
-            nfcProtocol.getConfiguration().connectionTimeoutMillis = timeout;
+        session.getProtocol().getConfiguration().connectionTimeoutMillis = timeout;
+    }
+
+    private void getSessions(CallbackContext callbackContext) throws JSONException {
+        JSONArray sessionIds = new JSONArray();
+        synchronized (sessions) {
+            for (String sessionId : sessions.keySet()) {
+                sessionIds.put(sessionId);
+            }
+        }
+        NfcSession session = currentSession;
+        JSONObject result = new JSONObject();
+        result.put("current", session != null ? session.getId() : JSONObject.NULL);
+        result.put("sessions", sessionIds);
+        callbackContext.success(result);
+    }
+
+    private void selectSession(String sessionId, CallbackContext callbackContext) {
+        NfcSession session = getSession(sessionId);
+        if (session == null) {
+            callbackContext.error("Unknown NFC session " + sessionId);
+            return;
         }
+        currentSession = session;
+        _lastTechName = session.getTechName();
+        callbackContext.success();
     }
 
     /**
      * Disable I/O operations to the tag from this TagTechnology object, and release resources.
      *
+     * @param sessionId       session to close, null for the current session
      * @param callbackContext Cordova callback context
      */
-    private void close(CallbackContext callbackContext) {
-        cordova.getThreadPool().execute(() -> {
+    private void close(@Nullable String sessionId, CallbackContext callbackContext) {
+        NfcSession current = currentSession;
+        String lane = sessionId != null ? sessionId : current != null ? current.getId() : null;
+        nfcExecutor.execute(lane, NfcExecutor.PRIORITY_INTERACTIVE, () -> {
             try {
-                this._close();
+                this._close(sessionId);
                 callbackContext.success();
 
             } catch (Throwable ex) {
@@ -1116,22 +1922,25 @@ public class NfcPlugin extends CordovaPlugin {
         });
     }
 
-    private void _close() throws Exception {
+    /**
+     * @param sessionId session to close, null for the current session
+     */
+    private void _close(@Nullable String sessionId) throws Exception {
+        NfcSession session = sessionId != null ? getSession(sessionId) : currentSession;
+        if (session == null) {
+            return;
+        }
         try {
-            _lastTechName = DEFAULT_NFC_TECH_CLASS_PASS;
-            if (nfcProtocol != null && nfcProtocol.isConnected()) {
-                nfcProtocol.disconnect();
-            }
-            else if (tagTechnology != null && tagTechnology.isConnected()) {
-                tagTechnology.close();
-            }
+            session.close();
         }
         finally {
-            lastTag = null;
-            nfcProtocol = null;
-            tagTechnology = null;
-            tagTechnologyClass = null;
-            lastTechName = null;
+            synchronized (sessions) {
+                sessions.remove(session.getId());
+            }
+            if (session == currentSession) {
+                _lastTechName = DEFAULT_NFC_TECH_CLASS_PASS;
+                currentSession = null;
+            }
         }
     }
     /**
@@ -1140,80 +1949,274 @@ public class NfcPlugin extends CordovaPlugin {
      * @param data            byte[] command to be passed to the tag
      * @param callbackContext Cordova callback context
      */
-    private void transceiveRaw(final byte[] data, final CallbackContext callbackContext) {
-        cordova.getThreadPool().execute(() -> {
+    private void transceiveRaw(final byte[] data, final NfcRequestToken token, final CallbackContext callbackContext) {
+        NfcSession current = currentSession;
+        String lane = current != null ? current.getId() : getIntentTagLane();
+        nfcExecutor.execute(lane, NfcExecutor.PRIORITY_INTERACTIVE, () -> {
             try {
-                this._connectIntentTagIfNeeded();
-                Method transceiveMethod = tagTechnologyClass.getMethod("transceive", byte[].class);
+                // A raw frame cannot be interrupted once sent: deadline and cancellation are checked before each frame
+                token.checkpoint();
+                NfcSession session = this._connectIntentTagIfNeeded();
                 try {
-                    @SuppressWarnings("PrimitiveArrayArgumentToVarargsMethod")
-                    byte[] response = (byte[]) transceiveMethod.invoke(tagTechnology, data);
-                    callbackContext.success(Helper.ByteArrayToHexString(response));
+                    sendBytes(callbackContext, session.transceive(data));
                 }
-                catch (InvocationTargetException e) {
-                    Throwable targetException = e.getTargetException();
-                    String errorMessage = targetException.getMessage();
+                catch (IOException | RuntimeException e) {
+                    String errorMessage = e.getMessage();
                     if (errorMessage != null && (errorMessage.endsWith("is out of date") ||
                             errorMessage.contains("Call connect() first"))) {
-                        this._connectIntentTag();
+                        session = this._connectIntentTag();
                         // Retry
-                        byte[] response = (byte[]) transceiveMethod.invoke(tagTechnology, data);
-                        callbackContext.success(Helper.ByteArrayToHexString(response));
+                        token.checkpoint();
+                        sendBytes(callbackContext, session.transceive(data));
                     }
                     else {
                         throw e;
                     }
                 }
             }
-            catch (InvocationTargetException e) {
-                String msg = e.getTargetException().getMessage();
-                Log.e(TAG, msg, e);
-                callbackContext.error(msg);
-            }
             catch (Throwable e) {
                 Log.e(TAG, e.getMessage(), e);
                 callbackContext.error(e.getMessage());
             }
+            finally {
+                requestTokens.remove(token.getId());
+            }
         });
     }
 
-    private void _connectIntentTag() throws Exception {
-        this._initIntentTag(this._lastTechName);
-        tagTechnology.connect();
+    @NonNull
+    private NfcSession _connectIntentTag() throws Exception {
+        NfcSession session = this._initIntentTag(this._lastTechName);
+        session.getTagTechnology().connect();
+        return session;
     }
 
-    private void _connectIntentTagIfNeeded() throws Exception {
-        if (tagTechnology == null) {
-            this._initIntentTag(this._lastTechName);
-            tagTechnology.connect();
+    @NonNull
+    private NfcSession _connectIntentTagIfNeeded() throws Exception {
+        NfcSession session = currentSession;
+        if (session == null) {
+            session = this._connectIntentTag();
         }
+        return session;
     }
 
     /**
      * Send raw commands to the tag and receive the response.
      *
      * @param data            byte[] command to be passed to the tag
+     * @param sessionId       session of the tag, null for the current session
      * @param callbackContext Cordova callback context
      */
-    private void transceiveTap(final byte[] data, final CallbackContext callbackContext) {
-        cordova.getThreadPool().execute(() -> {
+    private void transceiveTap(final byte[] data, @Nullable final String sessionId, final NfcRequestToken token, final CallbackContext callbackContext) {
+        final NfcSession session = getTapSession(sessionId, callbackContext);
+        if (session == null) {
+            requestTokens.remove(token.getId());
+            return;
+        }
+        session.execute(NfcExecutor.PRIORITY_INTERACTIVE, () -> {
             try {
-                if (nfcProtocol == null) {
-                    Log.e(TAG, "No Tech");
-                    callbackContext.error("No Tech");
-                    return;
-                }
+                NFCProtocol nfcProtocol = session.getProtocol();
                 if (!nfcProtocol.isConnected()) {
                     Log.e(TAG, "Not connected");
                     callbackContext.error("Not connected");
                     return;
                 }
-                byte[] response = nfcProtocol.send(data);
-                callbackContext.success(Helper.ByteArrayToHexString(response));
+                byte[] response = send(nfcProtocol, data, token);
+                getTapSessionCache().onExchange(session.getId());
+                sendBytes(callbackContext, response);
             } catch (Throwable e) {
                 Log.e(TAG, e.getMessage(), e);
                 callbackContext.error(e.getMessage());
+                onTapExchangeFailed(session, e, token);
+            } finally {
+                requestTokens.remove(token.getId());
+            }
+        });
+    }
+
+    /**
+     * Send a request to the Tap. The NFC5 protocol stops waiting as soon as the token is cancelled or expired,
+     * other protocols only check the token before sending.
+     */
+    private byte[] send(@NonNull NFCProtocol nfcProtocol, @NonNull byte[] data, @NonNull NfcRequestToken token) throws Exception {
+        token.checkpoint();
+        if (!(nfcProtocol instanceof NFC5Protocol)) {
+            return nfcProtocol.send(data);
+        }
+        NFC5Protocol nfc5Protocol = (NFC5Protocol) nfcProtocol;
+        nfc5Protocol.setRequestToken(token);
+        try {
+            return nfc5Protocol.send(data);
+        } finally {
+            nfc5Protocol.setRequestToken(null);
+        }
+    }
+
+    /**
+     * Create the token of a transceive request and register it for {@link #cancel(String)}
+     *
+     * @param data  action arguments
+     * @param index index of the timeout argument, followed by the request id argument
+     */
+    @NonNull
+    private NfcRequestToken createRequestToken(@NonNull JSONArray data, int index) throws JSONException {
+        long timeout = data.optLong(index, 0);
+        String requestId = data.isNull(index + 1) ? "request-" + nextRequestId.incrementAndGet() : data.getString(index + 1);
+        NfcRequestToken token = new NfcRequestToken(requestId, timeout);
+        requestTokens.put(requestId, token);
+        return token;
+    }
+
+    /**
+     * Cancel pending transceive requests. Queued requests fail without being sent,
+     * running requests stop at the next frame boundary.
+     *
+     * @param requestId request to cancel, null to cancel all pending requests
+     * @return number of requests cancelled
+     */
+    private int cancel(@Nullable String requestId) {
+        int count = 0;
+        for (NfcRequestToken token : requestTokens.values()) {
+            if (requestId == null || requestId.equals(token.getId())) {
+                token.cancel();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Send several requests to the Tap, one after another, and receive all the responses at once.
+     * Requests are run back to back on the session queue, so the mailbox state is kept between them.
+     * The batch stops at the first failed request.
+     *
+     * @param frames          requests, one after another
+     * @param lengths         length of each request in frames
+     * @param sessionId       session of the tag, null for the current session
+     * @param callbackContext Cordova callback context
+     */
+    private void transceiveTapBatch(final byte[] frames, final JSONArray lengths, @Nullable final String sessionId,
+                                    final NfcRequestToken token, final CallbackContext callbackContext) throws JSONException {
+        final List<byte[]> requests = new ArrayList<>(lengths.length());
+        int offset = 0;
+        for (int i = 0; i < lengths.length(); i++) {
+            int length = lengths.getInt(i);
+            if (length < 0 || offset + length > frames.length) {
+                callbackContext.error("Invalid batch: request " + i + " length " + length + " exceeds the frames buffer");
+                requestTokens.remove(token.getId());
+                return;
+            }
+            requests.add(Arrays.copyOfRange(frames, offset, offset + length));
+            offset += length;
+        }
+        final NfcSession session = getTapSession(sessionId, callbackContext);
+        if (session == null) {
+            requestTokens.remove(token.getId());
+            return;
+        }
+        session.execute(NfcExecutor.PRIORITY_INTERACTIVE, () -> {
+            List<byte[]> responses = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                try {
+                    NFCProtocol nfcProtocol = session.getProtocol();
+                    if (!nfcProtocol.isConnected()) {
+                        throw new IOException("Not connected");
+                    }
+                    responses.add(send(nfcProtocol, requests.get(i), token));
+                    getTapSessionCache().onExchange(session.getId());
+                } catch (Throwable e) {
+                    Log.e(TAG, "Batch request " + i + " failed: " + e.getMessage(), e);
+                    requestTokens.remove(token.getId());
+                    try {
+                        JSONObject error = new JSONObject();
+                        error.put("index", i);
+                        error.put("message", e.getMessage());
+                        sendBytesError(callbackContext, error, responses);
+                    } catch (JSONException jsonError) {
+                        callbackContext.error(e.getMessage());
+                    }
+                    onTapExchangeFailed(session, e, token);
+                    return;
+                }
             }
+            requestTokens.remove(token.getId());
+            sendBytes(callbackContext, responses);
         });
     }
+
+    private boolean isHexResultEnabled() {
+        Boolean enabled = this.hexResultEnabled;
+        return enabled != null ? enabled : preferences.getBoolean(PREF_ENABLE_NFC_HEX_RESULTS, false);
+    }
+
+    /**
+     * Send bytes as an ArrayBuffer, or as an hexadecimal string in hex result mode
+     */
+    private void sendBytes(@NonNull CallbackContext callbackContext, @NonNull byte[] data) {
+        if (isHexResultEnabled()) {
+            callbackContext.success(Helper.ByteArrayToHexString(data));
+        } else {
+            callbackContext.success(data);
+        }
+    }
+
+    /**
+     * Send a list of byte arrays as a multipart result of ArrayBuffers,
+     * or as an array of hexadecimal strings in hex result mode
+     */
+    private void sendBytes(@NonNull CallbackContext callbackContext, @NonNull List<byte[]> data) {
+        if (isHexResultEnabled() || data.isEmpty()) {
+            JSONArray hexData = new JSONArray();
+            for (byte[] item : data) {
+                hexData.put(Helper.ByteArrayToHexString(item));
+            }
+            callbackContext.success(hexData);
+            return;
+        }
+        callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, toBinaryParts(data)));
+    }
+
+    /**
+     * Send an error with the byte arrays received before the error, encoded like {@link #sendBytes(CallbackContext, List)}:
+     * a multipart error result of the error followed by ArrayBuffers, or the error with an array of hexadecimal
+     * strings in its "responses" field in hex result mode
+     */
+    private void sendBytesError(@NonNull CallbackContext callbackContext, @NonNull JSONObject error, @NonNull List<byte[]> data) throws JSONException {
+        if (isHexResultEnabled() || data.isEmpty()) {
+            JSONArray hexData = new JSONArray();
+            for (byte[] item : data) {
+                hexData.put(Helper.ByteArrayToHexString(item));
+            }
+            error.put("responses", hexData);
+            callbackContext.error(error);
+            return;
+        }
+        List<PluginResult> parts = new ArrayList<>(data.size() + 1);
+        parts.add(new PluginResult(PluginResult.Status.ERROR, error));
+        parts.addAll(toBinaryParts(data));
+        callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.ERROR, parts));
+    }
+
+    @NonNull
+    private static List<PluginResult> toBinaryParts(@NonNull List<byte[]> data) {
+        List<PluginResult> parts = new ArrayList<>(data.size());
+        for (byte[] item : data) {
+            parts.add(new PluginResult(PluginResult.Status.OK, item));
+        }
+        return parts;
+    }
+
+    /**
+     * @param sessionId session id or null for the current session
+     * @return the session or null if there is no such session. The callback has been notified of the error.
+     */
+    @Nullable
+    private NfcSession getTapSession(@Nullable String sessionId, CallbackContext callbackContext) {
+        NfcSession session = sessionId != null ? getSession(sessionId) : currentSession;
+        if (session == null) {
+            Log.e(TAG, "No Tech");
+            callbackContext.error(sessionId != null ? "Unknown NFC session " + sessionId : "No Tech");
+        }
+        return session;
+    }
 }
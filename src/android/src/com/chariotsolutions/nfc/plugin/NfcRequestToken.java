@@ -0,0 +1,127 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.os.SystemClock;
+
+import com.iotize.android.communication.client.impl.protocol.exception.TimeOutException;
+
+import java.util.concurrent.CancellationException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Deadline and cancellation state of one NFC request.
+ * <p>
+ * The protocol checks the token at each frame boundary ({@link #checkpoint()}) and sleeps through it
+ * ({@link #sleep(long)}), so that a cancelled or expired request stops waiting immediately
+ * and does not send any further frame.
+ */
+public class NfcRequestToken {
+
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    @NonNull
+    private final String id;
+    /**
+     * Deadline in {@link SystemClock#elapsedRealtime()} time base
+     */
+    private final long deadline;
+    private volatile boolean cancelled;
+
+    /**
+     * @param id      request id, used to cancel the request
+     * @param timeout time allowed to the request from now, in ms. 0 or less for no deadline
+     */
+    public NfcRequestToken(@NonNull String id, long timeout) {
+        this.id = id;
+        this.deadline = timeout > 0 ? SystemClock.elapsedRealtime() + timeout : NO_DEADLINE;
+    }
+
+    @NonNull
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Cancel the request and wake it up if it is sleeping
+     */
+    public void cancel() {
+        synchronized (this) {
+            cancelled = true;
+            notifyAll();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true if the request has been cancelled or its deadline is over
+     */
+    public boolean isDone() {
+        return cancelled || getRemainingTime() <= 0;
+    }
+
+    /**
+     * @return time left before the deadline, in ms
+     */
+    public long getRemainingTime() {
+        if (deadline == NO_DEADLINE) {
+            return Long.MAX_VALUE;
+        }
+        return deadline - SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * @throws CancellationException if the request has been cancelled
+     * @throws TimeOutException      if the deadline is over
+     */
+    public void checkpoint() throws TimeOutException {
+        if (cancelled) {
+            throw new CancellationException("NFC request " + id + " cancelled");
+        }
+        if (getRemainingTime() <= 0) {
+            throw new TimeOutException("NFC request " + id + " deadline exceeded");
+        }
+    }
+
+    /**
+     * Sleep until the delay, the deadline or the cancellation, whichever comes first
+     *
+     * @throws CancellationException if the request has been cancelled
+     * @throws TimeOutException      if the deadline is over
+     */
+    public void sleep(long delay) throws InterruptedException, TimeOutException {
+        checkpoint();
+        long wait = Math.min(delay, getRemainingTime());
+        if (wait > 0) {
+            synchronized (this) {
+                if (!cancelled) {
+                    wait(wait);
+                }
+            }
+        }
+        checkpoint();
+    }
+
+    /**
+     * Sleep with the token if any, as {@link Thread#sleep(long)} otherwise
+     */
+    public static void sleep(@Nullable NfcRequestToken token, long delay) throws InterruptedException, TimeOutException {
+        if (token != null) {
+            token.sleep(delay);
+        } else if (delay > 0) {
+            Thread.sleep(delay);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "NfcRequestToken{" +
+                "id=" + id +
+                "; cancelled=" + cancelled +
+                "; remaining=" + (deadline == NO_DEADLINE ? "none" : getRemainingTime() + "ms") +
+                '}';
+    }
+}
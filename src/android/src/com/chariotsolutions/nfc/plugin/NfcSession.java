@@ -0,0 +1,213 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.nfc.Tag;
+import android.nfc.tech.NfcV;
+import android.nfc.tech.TagTechnology;
+
+import com.iotize.android.core.util.Helper;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Connection state of one tag: tag technology and Tap protocol.
+ * <p>
+ * Sessions are kept by {@link NfcPlugin} in a table keyed by tag UID, so that several tags
+ * can be driven one after another without creating their protocol again.
+ * <p>
+ * I/O operations of a session are run one at a time on the session lane of the {@link NfcExecutor}
+ * (see {@link #execute(int, Runnable)}).
+ */
+public class NfcSession {
+
+    /**
+     * ISO 15693 Inventory, 1 slot, no mask: answered by any NfcV tag not in quiet state
+     */
+    private static final byte[] ISO15693_INVENTORY = new byte[]{0x26, 0x01, 0x00};
+
+    @NonNull
+    private final String id;
+    @NonNull
+    private final Tag tag;
+    @NonNull
+    private final String techName;
+    @NonNull
+    private final TagTechnologyAdapter adapter;
+    @NonNull
+    private final TagTechnology tagTechnology;
+    @NonNull
+    private final NFCProtocol protocol;
+    @NonNull
+    private final NfcExecutor executor;
+    private volatile boolean closed;
+    @Nullable
+    private volatile NfcLinkMonitor linkMonitor;
+
+    public NfcSession(@NonNull Tag tag,
+                      @NonNull String techName,
+                      @NonNull TagTechnologyAdapter adapter,
+                      @NonNull TagTechnology tagTechnology,
+                      @NonNull NFCProtocol protocol,
+                      @NonNull NfcExecutor executor) {
+        this.id = getSessionId(tag);
+        this.tag = tag;
+        this.techName = techName;
+        this.adapter = adapter;
+        this.tagTechnology = tagTechnology;
+        this.protocol = protocol;
+        this.executor = executor;
+    }
+
+    /**
+     * @return session id of a tag: its UID as hexadecimal string
+     */
+    @NonNull
+    public static String getSessionId(@NonNull Tag tag) {
+        return Helper.ByteArrayToHexString(tag.getId());
+    }
+
+    @NonNull
+    public String getId() {
+        return id;
+    }
+
+    @NonNull
+    public Tag getTag() {
+        return tag;
+    }
+
+    @NonNull
+    public String getTechName() {
+        return techName;
+    }
+
+    @NonNull
+    public TagTechnologyAdapter getAdapter() {
+        return adapter;
+    }
+
+    /**
+     * Send raw data with the tag technology of this session
+     */
+    @NonNull
+    public byte[] transceive(@NonNull byte[] data) throws IOException {
+        return adapter.transceive(tagTechnology, data);
+    }
+
+    @NonNull
+    public TagTechnology getTagTechnology() {
+        return tagTechnology;
+    }
+
+    @NonNull
+    public NFCProtocol getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * @return true if this session has been created for this tag discovery and technology
+     */
+    public boolean isFor(@Nullable Tag tag, @Nullable String techName) {
+        return this.tag == tag && this.techName.equals(techName);
+    }
+
+    /**
+     * Queue an I/O operation. Operations are run one after another on the session lane.
+     *
+     * @param priority NfcExecutor.PRIORITY_*
+     * @throws RejectedExecutionException if the session is closed
+     */
+    public void execute(int priority, @NonNull Runnable operation) {
+        if (closed) {
+            throw new RejectedExecutionException("Session " + id + " is closed");
+        }
+        executor.execute(id, priority, operation);
+    }
+
+    /**
+     * @return true if the tag of this session can be probed, see {@link #probe()}
+     */
+    public boolean isProbeSupported() {
+        return protocol.isConnected() || tagTechnology instanceof NfcV;
+    }
+
+    /**
+     * Cheapest presence check of the session tag, always an exchange with the tag:
+     * MB_CTRL_DYN read with a connected NFC5 Tap protocol, LwM2M application selection with a connected NFC4 Tap protocol,
+     * inventory for a NfcV session. Must be run on the session lane.
+     *
+     * @return true if the tag has answered. False if the tag or the Tap connection is lost.
+     */
+    public boolean probe() {
+        if (protocol.isConnected()) {
+            if (protocol instanceof NFC5Protocol) {
+                return ((NFC5Protocol) protocol).probe();
+            }
+            if (protocol instanceof NFC4Protocol) {
+                return ((NFC4Protocol) protocol).probe();
+            }
+        }
+        if (!(tagTechnology instanceof NfcV) || !tagTechnology.isConnected()) {
+            return false;
+        }
+        try {
+            transceive(ISO15693_INVENTORY);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Nullable
+    public NfcLinkMonitor getLinkMonitor() {
+        return linkMonitor;
+    }
+
+    /**
+     * Replace the link monitor of this session. The previous monitor is stopped.
+     */
+    public void setLinkMonitor(@Nullable NfcLinkMonitor monitor) {
+        NfcLinkMonitor previous = this.linkMonitor;
+        this.linkMonitor = monitor;
+        if (previous != null && previous != monitor) {
+            previous.stop();
+        }
+    }
+
+    /**
+     * Stop the link monitor of this session without reporting to its listener
+     */
+    public void cancelLinkMonitor() {
+        NfcLinkMonitor monitor = this.linkMonitor;
+        this.linkMonitor = null;
+        if (monitor != null) {
+            monitor.cancel();
+        }
+    }
+
+    /**
+     * Disconnect the protocol or close the tag technology.
+     * The link monitor is stopped.
+     * Queued operations are still run, new operations are rejected.
+     */
+    public void close() throws Exception {
+        closed = true;
+        setLinkMonitor(null);
+        if (protocol.isConnected()) {
+            protocol.disconnect();
+        } else if (tagTechnology.isConnected()) {
+            tagTechnology.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "NfcSession{" +
+                "id=" + id +
+                "; tech=" + techName +
+                '}';
+    }
+}
@@ -0,0 +1,258 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.os.SystemClock;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Fixed size ring buffer of binary NFC trace records
+ * <p>
+ * Records are stored in preallocated primitive arrays: recording a frame does not allocate.
+ * Records are written and copied under the buffer lock, held for one record by writers;
+ * dumps are built from a copy, outside of the lock.
+ * Oldest records are overwritten when the buffer is full.
+ */
+public class NfcTraceBuffer {
+
+    /**
+     * Custom command frame sent to the tag. Opcode is the command code.
+     */
+    public static final int TYPE_FRAME = 1;
+    /**
+     * Request/response exchange with the Tap. Opcode is 0.
+     */
+    public static final int TYPE_EXCHANGE = 2;
+
+    /**
+     * Frame sent with a fast command opcode
+     */
+    public static final int FLAG_FAST = 0x01;
+    /**
+     * Frame or exchange is a retry
+     */
+    public static final int FLAG_RETRY = 0x02;
+
+    /**
+     * Frame: ISO15693 response flag of the tag. Exchange: 0 when successful.
+     * Values from 0xF0 are failures before any response.
+     */
+    public static final int RESULT_CANCELLED = 0xFC;
+    public static final int RESULT_IO_ERROR = 0xFD;
+    public static final int RESULT_TIMEOUT = 0xFE;
+    public static final int RESULT_TAG_LOST = 0xFF;
+
+    /**
+     * Size of one record in the binary dump, in bytes (see {@link #toByteArray()})
+     */
+    public static final int RECORD_SIZE = 28;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+    private final int mask;
+    private volatile boolean enabled = true;
+
+    private long nextSequence = 0;
+    /**
+     * Sequence number of the record held by each slot, -1 if none
+     */
+    private final long[] stamps;
+    private final long[] timestamps;
+    private final int[] durations;
+    private final short[] requestLengths;
+    private final short[] responseLengths;
+    private final byte[] types;
+    private final byte[] opcodes;
+    private final byte[] flags;
+    private final byte[] results;
+
+    public NfcTraceBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of records, rounded up to a power of two
+     */
+    public NfcTraceBuffer(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.mask = this.capacity - 1;
+        this.stamps = new long[this.capacity];
+        Arrays.fill(this.stamps, -1);
+        this.timestamps = new long[this.capacity];
+        this.durations = new int[this.capacity];
+        this.requestLengths = new short[this.capacity];
+        this.responseLengths = new short[this.capacity];
+        this.types = new byte[this.capacity];
+        this.opcodes = new byte[this.capacity];
+        this.flags = new byte[this.capacity];
+        this.results = new byte[this.capacity];
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return time base of the records, in µs
+     */
+    public static long now() {
+        return SystemClock.elapsedRealtimeNanos() / 1000;
+    }
+
+    /**
+     * Record a trace
+     *
+     * @param type           record type (TYPE_*)
+     * @param opcode         command code
+     * @param flags          FLAG_* bits
+     * @param result         result (RESULT_* or response flag)
+     * @param requestLength  request length, in bytes
+     * @param responseLength response length, in bytes
+     * @param startTime      start time given by {@link #now()}
+     */
+    public void record(int type, int opcode, int flags, int result, int requestLength, int responseLength, long startTime) {
+        if (!enabled) {
+            return;
+        }
+        long duration = now() - startTime;
+        synchronized (this) {
+            long sequence = nextSequence++;
+            int slot = (int) (sequence & mask);
+            this.stamps[slot] = sequence;
+            this.timestamps[slot] = startTime;
+            this.durations[slot] = (int) Math.min(Integer.MAX_VALUE, duration);
+            this.requestLengths[slot] = (short) Math.min(0xFFFF, requestLength);
+            this.responseLengths[slot] = (short) Math.min(0xFFFF, responseLength);
+            this.types[slot] = (byte) type;
+            this.opcodes[slot] = (byte) opcode;
+            this.flags[slot] = (byte) flags;
+            this.results[slot] = (byte) result;
+        }
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(stamps, -1);
+    }
+
+    /**
+     * @return total number of records since the buffer has been created
+     */
+    public synchronized long getRecordCount() {
+        return nextSequence;
+    }
+
+    private interface RecordVisitor {
+        void visit(long sequence, long timestamp, int duration, int requestLength, int responseLength,
+                   int type, int opcode, int flags, int result) throws JSONException;
+    }
+
+    private int forEach(@NonNull RecordVisitor visitor) throws JSONException {
+        long end;
+        long[] stamps;
+        long[] timestamps;
+        int[] durations;
+        short[] requestLengths;
+        short[] responseLengths;
+        byte[] types;
+        byte[] opcodes;
+        byte[] flags;
+        byte[] results;
+        synchronized (this) {
+            end = this.nextSequence;
+            stamps = this.stamps.clone();
+            timestamps = this.timestamps.clone();
+            durations = this.durations.clone();
+            requestLengths = this.requestLengths.clone();
+            responseLengths = this.responseLengths.clone();
+            types = this.types.clone();
+            opcodes = this.opcodes.clone();
+            flags = this.flags.clone();
+            results = this.results.clone();
+        }
+        long start = Math.max(0, end - capacity);
+        int count = 0;
+        for (long sequence = start; sequence < end; sequence++) {
+            int slot = (int) (sequence & mask);
+            if (stamps[slot] != sequence) {
+                continue;
+            }
+            visitor.visit(sequence, timestamps[slot], durations[slot], requestLengths[slot] & 0xFFFF,
+                    responseLengths[slot] & 0xFFFF, types[slot] & 0xFF, opcodes[slot] & 0xFF, flags[slot] & 0xFF,
+                    results[slot] & 0xFF);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Binary dump of the records, oldest first.
+     * Each record is {@link #RECORD_SIZE} bytes, little endian:
+     * sequence (int64), timestamp in µs (int64), duration in µs (int32), request length (uint16),
+     * response length (uint16), type (uint8), opcode (uint8), flags (uint8), result (uint8)
+     */
+    @NonNull
+    public byte[] toByteArray() {
+        final ByteBuffer buffer = ByteBuffer.allocate(capacity * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            forEach((sequence, timestamp, duration, requestLength, responseLength, type, opcode, flags, result) -> {
+                buffer.putLong(sequence);
+                buffer.putLong(timestamp);
+                buffer.putInt(duration);
+                buffer.putShort((short) requestLength);
+                buffer.putShort((short) responseLength);
+                buffer.put((byte) type);
+                buffer.put((byte) opcode);
+                buffer.put((byte) flags);
+                buffer.put((byte) result);
+            });
+        } catch (JSONException e) {
+            // Not thrown by this visitor
+        }
+        byte[] dump = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, dump, 0, dump.length);
+        return dump;
+    }
+
+    /**
+     * JSON dump of the records, oldest first.
+     * Each record is an array: [sequence, timestamp, duration, requestLength, responseLength, type, opcode, flags, result]
+     */
+    @NonNull
+    public JSONObject toJSON() throws JSONException {
+        final JSONArray records = new JSONArray();
+        forEach((sequence, timestamp, duration, requestLength, responseLength, type, opcode, flags, result) -> {
+            JSONArray record = new JSONArray();
+            record.put(sequence);
+            record.put(timestamp);
+            record.put(duration);
+            record.put(requestLength);
+            record.put(responseLength);
+            record.put(type);
+            record.put(opcode);
+            record.put(flags);
+            record.put(result);
+            records.put(record);
+        });
+        JSONObject json = new JSONObject();
+        json.put("capacity", capacity);
+        json.put("recordCount", getRecordCount());
+        json.put("records", records);
+        return json;
+    }
+}
@@ -55,6 +55,10 @@ public class PluginResponse {
     }
 
     public void success(byte[] response) {
+        this.callbackContext.success(response);
+    }
+
+    public void successHex(byte[] response) {
         this.callbackContext.success(Helper.ByteArrayToHexString(response));
     }
 
@@ -0,0 +1,171 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.nfc.NfcAdapter;
+
+import org.json.JSONObject;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Options of the reader mode: platform flags and presence check delay, session created for each discovered tag.
+ * <p>
+ * With a technology, each tag discovered in reader mode becomes a session straight away, without the activity
+ * intent round trip: the protocol is created from the discovered tag, optionally connected and its mailbox checked
+ * on the tag lane, and the session id is given in the reader mode result.
+ */
+public class ReaderModeOptions {
+
+    private static final String ANDROID_NFC_TECH_PACKAGE = "android.nfc.tech.";
+
+    @Nullable
+    private final String tech;
+    private final boolean connect;
+    private final boolean checkMailbox;
+    private final int timeout;
+    /**
+     * Delay between presence checks of the platform, in ms. -1 for the platform default
+     */
+    private final int presenceCheckDelay;
+    private final boolean skipNdefCheck;
+    private final boolean noPlatformSounds;
+    /**
+     * true if the callback is given the first session only (beginSessionFromTech)
+     */
+    private final boolean singleResult;
+
+    private ReaderModeOptions(@Nullable String tech, boolean connect, boolean checkMailbox, int timeout,
+                              int presenceCheckDelay, boolean skipNdefCheck, boolean noPlatformSounds, boolean singleResult) {
+        this.tech = tech;
+        this.connect = connect;
+        this.checkMailbox = checkMailbox;
+        this.timeout = timeout;
+        this.presenceCheckDelay = presenceCheckDelay;
+        this.skipNdefCheck = skipNdefCheck;
+        this.noPlatformSounds = noPlatformSounds;
+        this.singleResult = singleResult;
+    }
+
+    /**
+     * @return options without session: reader mode results are tag JSON only
+     */
+    @NonNull
+    public static ReaderModeOptions none() {
+        return new ReaderModeOptions(null, false, false, -1, -1, false, false, false);
+    }
+
+    /**
+     * @param json tech (e.g. 'NfcV' or 'android.nfc.tech.NfcV'), connect, checkMailbox, timeout,
+     *             presenceCheckDelay, skipNdefCheck, noPlatformSounds. null for default options
+     */
+    @NonNull
+    public static ReaderModeOptions fromJSON(@Nullable JSONObject json) {
+        if (json == null) {
+            return none();
+        }
+        String tech = json.isNull("tech") ? null : toFullTechName(json.optString("tech"));
+        boolean connect = tech != null && json.optBoolean("connect", true);
+        return new ReaderModeOptions(tech, connect, connect && json.optBoolean("checkMailbox", false), json.optInt("timeout", -1),
+                json.optInt("presenceCheckDelay", -1), json.optBoolean("skipNdefCheck", false),
+                json.optBoolean("noPlatformSounds", false), false);
+    }
+
+    /**
+     * Options of a session started from a technology: the first tag of this technology is connected and given
+     * to the callback. NDEF check is skipped.
+     *
+     * @param tech e.g. 'NfcV' or 'android.nfc.tech.NfcV'
+     */
+    @NonNull
+    public static ReaderModeOptions forTech(@NonNull String tech, @Nullable JSONObject json) {
+        String fullTechName = toFullTechName(tech);
+        int presenceCheckDelay = json != null ? json.optInt("presenceCheckDelay", -1) : -1;
+        boolean checkMailbox = json != null && json.optBoolean("checkMailbox", false);
+        int timeout = json != null ? json.optInt("timeout", -1) : -1;
+        return new ReaderModeOptions(fullTechName, true, checkMailbox, timeout, presenceCheckDelay, true, false, true);
+    }
+
+    @NonNull
+    private static String toFullTechName(@NonNull String tech) {
+        return tech.startsWith(ANDROID_NFC_TECH_PACKAGE) ? tech : ANDROID_NFC_TECH_PACKAGE + tech;
+    }
+
+    /**
+     * @return reader mode flags polling the RF technologies of this tag technology
+     */
+    public static int getTechFlags(@NonNull String tech) {
+        switch (toFullTechName(tech).substring(ANDROID_NFC_TECH_PACKAGE.length())) {
+            case "NfcA":
+            case "MifareClassic":
+            case "MifareUltralight":
+                return NfcAdapter.FLAG_READER_NFC_A;
+            case "NfcB":
+                return NfcAdapter.FLAG_READER_NFC_B;
+            case "NfcF":
+                return NfcAdapter.FLAG_READER_NFC_F;
+            case "NfcV":
+                return NfcAdapter.FLAG_READER_NFC_V;
+            case "IsoDep":
+                return NfcAdapter.FLAG_READER_NFC_A | NfcAdapter.FLAG_READER_NFC_B;
+            default:
+                return NfcAdapter.FLAG_READER_NFC_A | NfcAdapter.FLAG_READER_NFC_B | NfcAdapter.FLAG_READER_NFC_F
+                        | NfcAdapter.FLAG_READER_NFC_V;
+        }
+    }
+
+    /**
+     * @return reader mode flags with the skip NDEF check and no platform sounds flags of these options
+     */
+    public int applyFlags(int flags) {
+        if (skipNdefCheck) {
+            flags |= NfcAdapter.FLAG_READER_SKIP_NDEF_CHECK;
+        }
+        if (noPlatformSounds) {
+            flags |= NfcAdapter.FLAG_READER_NO_PLATFORM_SOUNDS;
+        }
+        return flags;
+    }
+
+    /**
+     * @return delay between presence checks of the platform in ms, -1 for the platform default
+     */
+    public int getPresenceCheckDelay() {
+        return presenceCheckDelay;
+    }
+
+    /**
+     * @return true if the callback is given the first session only
+     */
+    public boolean isSingleResult() {
+        return singleResult;
+    }
+
+    /**
+     * @return TagTechnology class name of the sessions, null if no session is created
+     */
+    @Nullable
+    public String getTech() {
+        return tech;
+    }
+
+    /**
+     * @return true to connect the session protocol on discovery
+     */
+    public boolean isConnect() {
+        return connect;
+    }
+
+    /**
+     * @return true to check the Tap mailbox once connected
+     */
+    public boolean isCheckMailbox() {
+        return checkMailbox;
+    }
+
+    /**
+     * @return tag timeout in ms, -1 for the protocol default
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+}
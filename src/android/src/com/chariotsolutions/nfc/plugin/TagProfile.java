@@ -0,0 +1,135 @@
+package com.chariotsolutions.nfc.plugin;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Timing profile learned for one tag
+ * <p>
+ * Stored by {@link TagProfileStore} so that a returning tag starts with tuned timings.
+ */
+public class TagProfile {
+
+    @NonNull
+    private final String tagId;
+
+    private int nfcVersion;
+    /**
+     * Energy harvesting mode, null when unknown
+     */
+    @Nullable
+    private Boolean energyHarvestingEnabled;
+    /**
+     * Response latencies per request size class: [sizeClass, mean, deviation, sampleCount]
+     */
+    @NonNull
+    private JSONArray latencies = new JSONArray();
+
+    private long lastSeen;
+    private int connectCount;
+    private int exchangeCount;
+    private int writeRetryCount;
+    private int readRetryCount;
+    private int timeoutCount;
+
+    public TagProfile(@NonNull String tagId) {
+        this.tagId = tagId;
+    }
+
+    @NonNull
+    public String getTagId() {
+        return tagId;
+    }
+
+    public synchronized int getNfcVersion() {
+        return nfcVersion;
+    }
+
+    public synchronized void setNfcVersion(int nfcVersion) {
+        this.nfcVersion = nfcVersion;
+    }
+
+    @Nullable
+    public synchronized Boolean isEnergyHarvestingEnabled() {
+        return energyHarvestingEnabled;
+    }
+
+    public synchronized void setEnergyHarvestingEnabled(@Nullable Boolean energyHarvestingEnabled) {
+        this.energyHarvestingEnabled = energyHarvestingEnabled;
+    }
+
+    @NonNull
+    public synchronized JSONArray getLatencies() {
+        return latencies;
+    }
+
+    public synchronized void setLatencies(@NonNull JSONArray latencies) {
+        this.latencies = latencies;
+    }
+
+    public synchronized long getLastSeen() {
+        return lastSeen;
+    }
+
+    public synchronized void onConnect() {
+        this.connectCount++;
+        this.lastSeen = System.currentTimeMillis();
+    }
+
+    public synchronized void onExchange() {
+        this.exchangeCount++;
+    }
+
+    public synchronized int getExchangeCount() {
+        return exchangeCount;
+    }
+
+    public synchronized void onWriteRetry() {
+        this.writeRetryCount++;
+    }
+
+    public synchronized void onReadRetry() {
+        this.readRetryCount++;
+    }
+
+    public synchronized void onTimeout() {
+        this.timeoutCount++;
+    }
+
+    @NonNull
+    public synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("nfcVersion", nfcVersion);
+        json.put("energyHarvestingEnabled", energyHarvestingEnabled != null ? energyHarvestingEnabled : JSONObject.NULL);
+        json.put("latencies", latencies);
+        json.put("lastSeen", lastSeen);
+        json.put("connectCount", connectCount);
+        json.put("exchangeCount", exchangeCount);
+        json.put("writeRetryCount", writeRetryCount);
+        json.put("readRetryCount", readRetryCount);
+        json.put("timeoutCount", timeoutCount);
+        return json;
+    }
+
+    @NonNull
+    public static TagProfile fromJSON(@NonNull String tagId, @NonNull JSONObject json) {
+        TagProfile profile = new TagProfile(tagId);
+        profile.nfcVersion = json.optInt("nfcVersion", 0);
+        profile.energyHarvestingEnabled = json.isNull("energyHarvestingEnabled") ? null : json.optBoolean("energyHarvestingEnabled");
+        JSONArray latencies = json.optJSONArray("latencies");
+        if (latencies != null) {
+            profile.latencies = latencies;
+        }
+        profile.lastSeen = json.optLong("lastSeen", 0);
+        profile.connectCount = json.optInt("connectCount", 0);
+        profile.exchangeCount = json.optInt("exchangeCount", 0);
+        profile.writeRetryCount = json.optInt("writeRetryCount", 0);
+        profile.readRetryCount = json.optInt("readRetryCount", 0);
+        profile.timeoutCount = json.optInt("timeoutCount", 0);
+        return profile;
+    }
+}
@@ -0,0 +1,144 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.iotize.android.core.util.Helper;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * On-device store of {@link TagProfile} keyed by tag UID
+ * <p>
+ * Profiles are persisted in shared preferences so that they survive app restarts.
+ * The least recently seen profiles are removed when the store is full: the stored keys are kept in memory,
+ * least recently seen first, so that saving a profile does not read nor parse the other stored profiles.
+ */
+public class TagProfileStore {
+
+    private static final String TAG = "TagProfileStore";
+    private static final String PREFERENCES_NAME = "NfcPluginTagProfiles";
+    private static final int MAX_PROFILES = 512;
+
+    @NonNull
+    private final SharedPreferences sharedPreferences;
+
+    /**
+     * Profiles loaded, least recently used first out
+     */
+    private final Map<String, TagProfile> profiles = new LinkedHashMap<String, TagProfile>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TagProfile> eldest) {
+            return size() > MAX_PROFILES;
+        }
+    };
+
+    /**
+     * Last seen time by stored key, least recently seen first. Loaded when a new profile is saved for the first time
+     */
+    @Nullable
+    private LinkedHashMap<String, Long> storedKeys;
+
+    public TagProfileStore(@NonNull Context context) {
+        this.sharedPreferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return the stored profile of this tag or a new empty profile
+     */
+    @NonNull
+    public synchronized TagProfile get(@NonNull byte[] tagId) {
+        String key = Helper.ByteArrayToHexString(tagId);
+        TagProfile profile = profiles.get(key);
+        if (profile == null) {
+            profile = load(key);
+            profiles.put(key, profile);
+        }
+        return profile;
+    }
+
+    public synchronized void save(@NonNull TagProfile profile) {
+        try {
+            String key = profile.getTagId();
+            if (storedKeys == null && !sharedPreferences.contains(key)) {
+                storedKeys = loadStoredKeys();
+            }
+            SharedPreferences.Editor editor = sharedPreferences.edit();
+            editor.putString(key, profile.toJSON().toString());
+            if (storedKeys != null) {
+                // Most recently seen last
+                storedKeys.remove(key);
+                storedKeys.put(key, profile.getLastSeen());
+                removeOldestProfiles(editor);
+            }
+            editor.apply();
+        } catch (JSONException e) {
+            Log.w(TAG, "Cannot save tag profile " + profile.getTagId(), e);
+        }
+    }
+
+    public synchronized void clear() {
+        profiles.clear();
+        storedKeys = new LinkedHashMap<>();
+        sharedPreferences.edit().clear().apply();
+    }
+
+    @NonNull
+    private TagProfile load(@NonNull String key) {
+        String value = sharedPreferences.getString(key, null);
+        if (value != null) {
+            try {
+                return TagProfile.fromJSON(key, new JSONObject(value));
+            } catch (JSONException e) {
+                Log.w(TAG, "Invalid tag profile " + key + ", ignoring it", e);
+            }
+        }
+        return new TagProfile(key);
+    }
+
+    /**
+     * Read the last seen time of every stored profile, once
+     */
+    @NonNull
+    private LinkedHashMap<String, Long> loadStoredKeys() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        for (Map.Entry<String, ?> entry : sharedPreferences.getAll().entrySet()) {
+            long lastSeen = 0;
+            try {
+                lastSeen = new JSONObject(String.valueOf(entry.getValue())).optLong("lastSeen", 0);
+            } catch (JSONException e) {
+                // Invalid profile is removed first
+            }
+            entries.add(new AbstractMap.SimpleEntry<>(entry.getKey(), lastSeen));
+        }
+        Collections.sort(entries, (a, b) -> Long.compare(a.getValue(), b.getValue()));
+        LinkedHashMap<String, Long> keys = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : entries) {
+            keys.put(entry.getKey(), entry.getValue());
+        }
+        return keys;
+    }
+
+    private void removeOldestProfiles(@NonNull SharedPreferences.Editor editor) {
+        Iterator<String> iterator = storedKeys.keySet().iterator();
+        while (storedKeys.size() > MAX_PROFILES && iterator.hasNext()) {
+            String oldestKey = iterator.next();
+            iterator.remove();
+            editor.remove(oldestKey);
+            profiles.remove(oldestKey);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.content.Intent;
+import android.nfc.NdefMessage;
+import android.nfc.NfcAdapter;
+import android.nfc.Tag;
+import android.nfc.tech.Ndef;
+import android.nfc.tech.NfcV;
+import android.os.Parcelable;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Tag of one discovery, parsed once and shared by all the events of this discovery.
+ * <p>
+ * Technologies, NDEF technology and JSON representations are computed on first use only, then reused:
+ * the NDEF JSON (and the binder calls it requires) is built once per discovery whatever the number of events fired.
+ * JSON objects returned are shared and must not be modified.
+ */
+public class TagSnapshot {
+
+    private static final String TAG = "TagSnapshot";
+
+    /**
+     * Minimum number of NDEF records of a Tap
+     */
+    private static final int IOTIZE_MIN_RECORDS = 4;
+
+    @Nullable
+    private final Intent intent;
+    @NonNull
+    private final Tag tag;
+    @Nullable
+    private final Parcelable[] messages;
+    @NonNull
+    private final Util.ByteEncoding encoding;
+
+    private List<String> techList;
+    private boolean ndefResolved;
+    @Nullable
+    private Ndef ndef;
+    private JSONObject ndefJSON;
+    private JSONObject tagJSON;
+    private JSONObject idJSON;
+    private JSONObject summaryJSON;
+    private JSONObject capabilitiesJSON;
+    @Nullable
+    private String handle;
+    private Boolean ioTizeTag;
+
+    public TagSnapshot(@Nullable Intent intent, @NonNull Tag tag, @Nullable Parcelable[] messages, @NonNull Util.ByteEncoding encoding) {
+        this.intent = intent;
+        this.tag = tag;
+        this.messages = messages;
+        this.encoding = encoding;
+    }
+
+    /**
+     * @return the snapshot of the tag of this discovery intent, null if there is no tag
+     */
+    @Nullable
+    public static TagSnapshot fromIntent(@NonNull Intent intent, @NonNull Util.ByteEncoding encoding) {
+        Tag tag = intent.getParcelableExtra(NfcAdapter.EXTRA_TAG);
+        if (tag == null) {
+            return null;
+        }
+        Parcelable[] messages = intent.getParcelableArrayExtra(NfcAdapter.EXTRA_NDEF_MESSAGES);
+        return new TagSnapshot(intent, tag, messages, encoding);
+    }
+
+    /**
+     * @return the discovery intent, null for a reader mode discovery
+     */
+    @Nullable
+    public Intent getIntent() {
+        return intent;
+    }
+
+    @NonNull
+    public Tag getTag() {
+        return tag;
+    }
+
+    @NonNull
+    public String getId() {
+        return NfcSession.getSessionId(tag);
+    }
+
+    @NonNull
+    public synchronized List<String> getTechList() {
+        if (techList == null) {
+            techList = Collections.unmodifiableList(Arrays.asList(tag.getTechList()));
+        }
+        return techList;
+    }
+
+    public boolean hasTech(@NonNull Class<?> techClass) {
+        return getTechList().contains(techClass.getName());
+    }
+
+    /**
+     * @return the NDEF technology of the tag, null if the tag is not NDEF
+     */
+    @Nullable
+    public synchronized Ndef getNdef() {
+        if (!ndefResolved) {
+            ndef = hasTech(Ndef.class) ? Ndef.get(tag) : null;
+            ndefResolved = true;
+        }
+        return ndef;
+    }
+
+    /**
+     * @return the NDEF message read at discovery, null if none
+     */
+    @Nullable
+    public NdefMessage getCachedNdefMessage() {
+        Ndef ndef = getNdef();
+        return ndef != null ? ndef.getCachedNdefMessage() : null;
+    }
+
+    /**
+     * @return the NDEF message read at discovery, or the pushed message for peer-to-peer, null if none
+     */
+    @Nullable
+    public NdefMessage getNdefMessage() {
+        NdefMessage message = getCachedNdefMessage();
+        if (message == null && messages != null && messages.length > 0) {
+            message = (NdefMessage) messages[0];
+        }
+        return message;
+    }
+
+    /**
+     * NDEF JSON of the tag, with the pushed message for peer-to-peer.
+     * May throw a java.lang.SecurityException error if Tag is out of date (tested on Android 13)
+     */
+    @NonNull
+    public synchronized JSONObject getNdefJSON() throws SecurityException {
+        if (ndefJSON == null) {
+            ndefJSON = buildNdefJSON();
+        }
+        return ndefJSON;
+    }
+
+    private JSONObject buildNdefJSON() {
+        Ndef ndef = getNdef();
+        JSONObject json = Util.ndefToJSON(ndef, encoding);
+
+        // ndef is null for peer-to-peer
+        // ndef and messages are null for ndef format-able
+        if (ndef == null && messages != null) {
+
+            try {
+
+                if (messages.length > 0) {
+                    NdefMessage message = (NdefMessage) messages[0];
+                    json.put("ndefMessage", Util.messageToJSON(message, encoding));
+                    // guessing type, would prefer a more definitive way to determine type
+                    json.put("type", "NDEF Push Protocol");
+                }
+
+                if (messages.length > 1) {
+                    Log.wtf(TAG, "Expected one ndefMessage but found " + messages.length);
+                }
+
+            } catch (JSONException e) {
+                // shouldn't happen
+                Log.e(Util.TAG, "Failed to convert ndefMessage into json", e);
+            }
+        }
+        return json;
+    }
+
+    /**
+     * @return id and technologies of the tag
+     */
+    @NonNull
+    public synchronized JSONObject getTagJSON() {
+        if (tagJSON == null) {
+            tagJSON = Util.tagToJSON(tag, encoding);
+        }
+        return tagJSON;
+    }
+
+    /**
+     * @return id of the tag only
+     */
+    @NonNull
+    public synchronized JSONObject getIdJSON() {
+        if (idJSON == null) {
+            idJSON = new JSONObject();
+            try {
+                idJSON.put("id", Util.bytesToJSON(tag.getId(), encoding));
+                Util.putEncoding(idJSON, encoding);
+            } catch (JSONException e) {
+                Log.e(TAG, "Failed to convert tag id into json", e);
+            }
+        }
+        return idJSON;
+    }
+
+    /**
+     * @return handle of the snapshot in the {@link TagSnapshotStore}, null if not registered
+     */
+    @Nullable
+    public synchronized String getHandle() {
+        return handle;
+    }
+
+    synchronized void setHandle(@NonNull String handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * @return id and technologies of the tag, and handle of the snapshot to fetch the details
+     * @throws IllegalStateException if the snapshot is not registered
+     */
+    @NonNull
+    public synchronized JSONObject getSummaryJSON() {
+        if (handle == null) {
+            throw new IllegalStateException("Tag snapshot not registered");
+        }
+        if (summaryJSON == null) {
+            summaryJSON = Util.tagToJSON(tag, encoding);
+            try {
+                summaryJSON.put("handle", handle);
+            } catch (JSONException e) {
+                Log.e(TAG, "Failed to put handle into json", e);
+            }
+        }
+        return summaryJSON;
+    }
+
+    /**
+     * @return NDEF message of the tag (read at discovery or pushed), JSON null if none
+     */
+    @NonNull
+    public Object getNdefMessageJSON() {
+        NdefMessage message = getNdefMessage();
+        return message != null ? Util.messageToJSON(message, encoding) : JSONObject.NULL;
+    }
+
+    /**
+     * NDEF type, maxSize, isWritable and canMakeReadOnly of the tag, empty if the tag is not NDEF.
+     * May throw a java.lang.SecurityException error if Tag is out of date
+     */
+    @NonNull
+    public synchronized JSONObject getCapabilitiesJSON() throws SecurityException {
+        if (capabilitiesJSON == null) {
+            JSONObject json = new JSONObject();
+            Ndef ndef = getNdef();
+            if (ndef != null) {
+                try {
+                    Util.putNdefCapabilities(json, ndef);
+                } catch (JSONException e) {
+                    Log.e(TAG, "Failed to convert ndef capabilities into json", e);
+                }
+            }
+            capabilitiesJSON = json;
+        }
+        return capabilitiesJSON;
+    }
+
+    /**
+     * @return the NDEF JSON if the tag is NDEF, the tag JSON otherwise
+     */
+    @NonNull
+    public JSONObject toJSON() {
+        return hasTech(Ndef.class) ? getNdefJSON() : getTagJSON();
+    }
+
+    /**
+     * @return true if the tag looks like a Tap: NfcV with an NDEF message of at least 4 records
+     */
+    public synchronized boolean isIoTizeTag() {
+        if (ioTizeTag == null) {
+            NdefMessage message = hasTech(NfcV.class) ? getCachedNdefMessage() : null;
+            ioTizeTag = message != null && message.getRecords().length >= IOTIZE_MIN_RECORDS; // TODO improve condition
+        }
+        return ioTizeTag;
+    }
+
+    @Override
+    public String toString() {
+        return "TagSnapshot{" +
+                "id=" + getId() +
+                "; techList=" + getTechList() +
+                '}';
+    }
+}
@@ -0,0 +1,93 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.os.SystemClock;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Tag snapshots of the summary events, by handle.
+ * <p>
+ * A summary event carries the handle of its snapshot instead of the NDEF data: the application fetches
+ * the details it needs with the handle (see getTagDetails). The store holds at most {@link #MAX_SNAPSHOTS}
+ * snapshots, least recently used first out, for at most {@link #TIMEOUT} ms.
+ */
+public class TagSnapshotStore {
+
+    private static final int MAX_SNAPSHOTS = 16;
+
+    /**
+     * Time a snapshot is kept after its registration, in ms
+     */
+    private static final long TIMEOUT = 60000;
+
+    private final LinkedHashMap<String, StoredSnapshot> snapshots = new LinkedHashMap<String, StoredSnapshot>(MAX_SNAPSHOTS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, StoredSnapshot> eldest) {
+            return size() > MAX_SNAPSHOTS;
+        }
+    };
+
+    private long nextHandle = 1;
+
+    private static class StoredSnapshot {
+        @NonNull
+        final TagSnapshot snapshot;
+        final long time;
+
+        StoredSnapshot(@NonNull TagSnapshot snapshot, long time) {
+            this.snapshot = snapshot;
+            this.time = time;
+        }
+    }
+
+    /**
+     * @return the handle of the snapshot, registering it if needed
+     */
+    @NonNull
+    public String register(@NonNull TagSnapshot snapshot) {
+        return register(snapshot, SystemClock.elapsedRealtime());
+    }
+
+    @NonNull
+    synchronized String register(@NonNull TagSnapshot snapshot, long now) {
+        evictExpired(now);
+        String handle = snapshot.getHandle();
+        if (handle == null) {
+            handle = snapshot.getId() + "-" + nextHandle++;
+            snapshot.setHandle(handle);
+        }
+        if (!snapshots.containsKey(handle)) {
+            snapshots.put(handle, new StoredSnapshot(snapshot, now));
+        }
+        return handle;
+    }
+
+    /**
+     * @return the snapshot of this handle, null if unknown or expired
+     */
+    @Nullable
+    public TagSnapshot get(@NonNull String handle) {
+        return get(handle, SystemClock.elapsedRealtime());
+    }
+
+    @Nullable
+    synchronized TagSnapshot get(@NonNull String handle, long now) {
+        evictExpired(now);
+        StoredSnapshot entry = snapshots.get(handle);
+        return entry != null ? entry.snapshot : null;
+    }
+
+    private void evictExpired(long now) {
+        Iterator<StoredSnapshot> iterator = snapshots.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().time > TIMEOUT) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.nfc.Tag;
+import android.nfc.tech.IsoDep;
+import android.nfc.tech.MifareClassic;
+import android.nfc.tech.MifareUltralight;
+import android.nfc.tech.NfcA;
+import android.nfc.tech.NfcB;
+import android.nfc.tech.NfcF;
+import android.nfc.tech.NfcV;
+import android.nfc.tech.TagTechnology;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Typed access to a tag technology: get the technology of a tag and transceive raw data.
+ * <p>
+ * Adapters of the Android technologies supporting transceive are precomputed.
+ * Other technologies are accessed by reflection, methods being looked up once per technology.
+ */
+public final class TagTechnologyAdapter {
+
+    interface Getter {
+        @Nullable
+        TagTechnology get(@NonNull Tag tag);
+    }
+
+    interface Transceiver {
+        @NonNull
+        byte[] transceive(@NonNull TagTechnology tagTechnology, @NonNull byte[] data) throws IOException;
+    }
+
+    private static final Map<String, TagTechnologyAdapter> adapters = new ConcurrentHashMap<>();
+
+    static {
+        register(NfcA.class, NfcA::get, (tech, data) -> ((NfcA) tech).transceive(data));
+        register(NfcB.class, NfcB::get, (tech, data) -> ((NfcB) tech).transceive(data));
+        register(NfcF.class, NfcF::get, (tech, data) -> ((NfcF) tech).transceive(data));
+        register(NfcV.class, NfcV::get, (tech, data) -> ((NfcV) tech).transceive(data));
+        register(IsoDep.class, IsoDep::get, (tech, data) -> ((IsoDep) tech).transceive(data));
+        register(MifareClassic.class, MifareClassic::get, (tech, data) -> ((MifareClassic) tech).transceive(data));
+        register(MifareUltralight.class, MifareUltralight::get, (tech, data) -> ((MifareUltralight) tech).transceive(data));
+    }
+
+    @NonNull
+    private final String name;
+    @NonNull
+    private final Getter getter;
+    @Nullable
+    private final Transceiver transceiver;
+
+    private TagTechnologyAdapter(@NonNull String name, @NonNull Getter getter, @Nullable Transceiver transceiver) {
+        this.name = name;
+        this.getter = getter;
+        this.transceiver = transceiver;
+    }
+
+    private static void register(@NonNull Class<? extends TagTechnology> techClass, @NonNull Getter getter, @NonNull Transceiver transceiver) {
+        adapters.put(techClass.getName(), new TagTechnologyAdapter(techClass.getName(), getter, transceiver));
+    }
+
+    /**
+     * @param techName TagTechnology class name e.g. 'android.nfc.tech.IsoDep'
+     * @return the adapter of this technology
+     * @throws ClassNotFoundException if there is no such technology
+     * @throws NoSuchMethodException  if the technology has no static get(Tag) method
+     */
+    @NonNull
+    public static TagTechnologyAdapter forName(@NonNull String techName) throws ClassNotFoundException, NoSuchMethodException {
+        TagTechnologyAdapter adapter = adapters.get(techName);
+        if (adapter == null) {
+            adapter = createReflectionAdapter(techName);
+            adapters.put(techName, adapter);
+        }
+        return adapter;
+    }
+
+    @NonNull
+    private static TagTechnologyAdapter createReflectionAdapter(@NonNull String techName) throws ClassNotFoundException, NoSuchMethodException {
+        Class<?> techClass = Class.forName(techName);
+        final Method getMethod = techClass.getMethod("get", Tag.class);
+        Method method;
+        try {
+            method = techClass.getMethod("transceive", byte[].class);
+        } catch (NoSuchMethodException e) {
+            method = null;
+        }
+        final Method transceiveMethod = method;
+        Getter getter = tag -> {
+            try {
+                return (TagTechnology) getMethod.invoke(null, tag);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (InvocationTargetException e) {
+                throw unwrapRuntimeException(e);
+            }
+        };
+        Transceiver transceiver = transceiveMethod == null ? null : (tech, data) -> {
+            try {
+                return (byte[]) transceiveMethod.invoke(tech, (Object) data);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (InvocationTargetException e) {
+                if (e.getTargetException() instanceof IOException) {
+                    throw (IOException) e.getTargetException();
+                }
+                throw unwrapRuntimeException(e);
+            }
+        };
+        return new TagTechnologyAdapter(techName, getter, transceiver);
+    }
+
+    @NonNull
+    private static RuntimeException unwrapRuntimeException(@NonNull InvocationTargetException e) {
+        Throwable target = e.getTargetException();
+        if (target instanceof RuntimeException) {
+            return (RuntimeException) target;
+        }
+        return new IllegalStateException(target);
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the technology of this tag or null if the tag does not support it
+     */
+    @Nullable
+    public TagTechnology get(@NonNull Tag tag) {
+        return getter.get(tag);
+    }
+
+    /**
+     * Send raw data to the tag and receive the response
+     *
+     * @throws UnsupportedOperationException if the technology does not support transceive
+     */
+    @NonNull
+    public byte[] transceive(@NonNull TagTechnology tagTechnology, @NonNull byte[] data) throws IOException {
+        if (transceiver == null) {
+            throw new UnsupportedOperationException(name + " does not support transceive");
+        }
+        return transceiver.transceive(tagTechnology, data);
+    }
+}
@@ -0,0 +1,256 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.iotize.android.device.device.impl.IoTizeDevice;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Tap devices discovered recently, by tag UID.
+ * <p>
+ * A cached {@link IoTizeDevice} keeps its NFC pairing, its encryption session and its frame counter:
+ * when the same Tap is tapped again within the idle timeout, its protocol is bound to the new tag discovery
+ * (see {@link NFCProtocol#rebind(android.nfc.Tag)}) and pairing and key exchange are skipped.
+ * <p>
+ * A reused session is checked by its first exchange: if it fails, the Tap has probably lost its session
+ * (e.g. energy harvesting Tap powered off between taps) and the session is dropped (see {@link #onExchangeFailed(String)}).
+ * <p>
+ * The cache holds at most {@link #MAX_SESSIONS} Taps, least recently used first out.
+ * The protocol of a session is disconnected when the session is evicted or removed.
+ */
+public class TapSessionCache {
+
+    private static final String TAG = "TapSessionCache";
+
+    private static final int MAX_SESSIONS = 8;
+
+    /**
+     * Idle time after which a Tap session is not reused, in ms. 0 to disable the cache.
+     */
+    private final long idleTimeout;
+
+    private final LinkedHashMap<String, TapSession> sessions = new LinkedHashMap<String, TapSession>(MAX_SESSIONS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TapSession> eldest) {
+            if (size() <= MAX_SESSIONS) {
+                return false;
+            }
+            Log.d(TAG, "Evicting least recently used Tap session " + eldest.getKey());
+            eldest.getValue().close();
+            return true;
+        }
+    };
+
+    public static class TapSession {
+        @NonNull
+        private final String id;
+        @NonNull
+        private final IoTizeDevice tap;
+        @NonNull
+        private final NFCProtocol protocol;
+        private final boolean nfcPairingEnabled;
+        private final boolean encryptionEnabled;
+        private long lastUsedTime;
+        private int reuseCount = 0;
+        /**
+         * False after a reuse until an exchange has succeeded
+         */
+        private boolean validated = true;
+
+        public TapSession(@NonNull IoTizeDevice tap, @NonNull NFCProtocol protocol, boolean nfcPairingEnabled, boolean encryptionEnabled) {
+            this.id = NfcSession.getSessionId(protocol.getTag());
+            this.tap = tap;
+            this.protocol = protocol;
+            this.nfcPairingEnabled = nfcPairingEnabled;
+            this.encryptionEnabled = encryptionEnabled;
+            this.lastUsedTime = SystemClock.elapsedRealtime();
+        }
+
+        @NonNull
+        public String getId() {
+            return id;
+        }
+
+        @NonNull
+        public IoTizeDevice getTap() {
+            return tap;
+        }
+
+        @NonNull
+        public NFCProtocol getProtocol() {
+            return protocol;
+        }
+
+        /**
+         * @return true if the session has been created with these settings
+         */
+        public boolean matches(boolean nfcPairingEnabled, boolean encryptionEnabled) {
+            return this.nfcPairingEnabled == nfcPairingEnabled && this.encryptionEnabled == encryptionEnabled;
+        }
+
+        /**
+         * @return true if pairing and key exchange have been skipped for a re-tap of this Tap
+         */
+        public boolean isReused() {
+            return reuseCount > 0;
+        }
+
+        public int getReuseCount() {
+            return reuseCount;
+        }
+
+        synchronized void onReused(long now) {
+            reuseCount++;
+            lastUsedTime = now;
+            validated = false;
+        }
+
+        synchronized void onUsed(long now) {
+            lastUsedTime = now;
+            validated = true;
+        }
+
+        /**
+         * @return false if the session has been reused and no exchange has succeeded since
+         */
+        public synchronized boolean isValidated() {
+            return validated;
+        }
+
+        synchronized boolean isIdle(long now, long idleTimeout) {
+            return now - lastUsedTime > idleTimeout;
+        }
+
+        void close() {
+            try {
+                protocol.disconnect();
+            } catch (Exception e) {
+                Log.d(TAG, "Cannot disconnect Tap session " + id + ": " + e.getMessage());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "TapSession{" +
+                    "id=" + id +
+                    "; reuseCount=" + reuseCount +
+                    '}';
+        }
+    }
+
+    /**
+     * @param idleTimeout idle time after which a Tap session is not reused, in ms. 0 to disable the cache.
+     */
+    public TapSessionCache(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public boolean isEnabled() {
+        return idleTimeout > 0;
+    }
+
+    /**
+     * @return the session of this Tap if it has been used within the idle timeout, null otherwise
+     */
+    @Nullable
+    public TapSession get(@NonNull String id) {
+        return get(id, SystemClock.elapsedRealtime());
+    }
+
+    @Nullable
+    synchronized TapSession get(@NonNull String id, long now) {
+        evictIdleSessions(now);
+        return sessions.get(id);
+    }
+
+    public void put(@NonNull TapSession session) {
+        put(session, SystemClock.elapsedRealtime());
+    }
+
+    synchronized void put(@NonNull TapSession session, long now) {
+        if (!isEnabled()) {
+            return;
+        }
+        evictIdleSessions(now);
+        session.onUsed(now);
+        TapSession previous = sessions.put(session.getId(), session);
+        if (previous != null && previous != session) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Reuse the session of a Tap tapped again: the session is checked by its next exchange
+     */
+    public void onReused(@NonNull TapSession session) {
+        session.onReused(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * An exchange with this Tap has succeeded: its session is valid and not idle
+     */
+    public void onExchange(@NonNull String id) {
+        onExchange(id, SystemClock.elapsedRealtime());
+    }
+
+    synchronized void onExchange(@NonNull String id, long now) {
+        TapSession session = sessions.get(id);
+        if (session != null) {
+            session.onUsed(now);
+        }
+    }
+
+    /**
+     * An exchange with this Tap has failed. The session is dropped if it has been reused
+     * and no exchange has succeeded since: the Tap has probably lost its pairing and encryption session.
+     *
+     * @return the dropped session, null if the session is kept or unknown
+     */
+    @Nullable
+    public synchronized TapSession onExchangeFailed(@NonNull String id) {
+        TapSession session = sessions.get(id);
+        if (session == null || session.isValidated()) {
+            return null;
+        }
+        Log.d(TAG, "First exchange of reused " + session + " failed, dropping it");
+        remove(id);
+        return session;
+    }
+
+    public synchronized void remove(@NonNull String id) {
+        TapSession session = sessions.remove(id);
+        if (session != null) {
+            session.close();
+        }
+    }
+
+    public synchronized void clear() {
+        for (TapSession session : sessions.values()) {
+            session.close();
+        }
+        sessions.clear();
+    }
+
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    private void evictIdleSessions(long now) {
+        Iterator<TapSession> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            TapSession session = iterator.next();
+            if (session.isIdle(now, idleTimeout)) {
+                Log.d(TAG, "Evicting idle Tap session " + session.getId());
+                iterator.remove();
+                session.close();
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import android.nfc.NdefMessage;
 import android.nfc.NdefRecord;
 import android.nfc.Tag;
 import android.nfc.tech.Ndef;
+import android.util.Base64;
 import android.util.Log;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -17,7 +18,34 @@ public class Util {
 
     static final String TAG = "NfcPlugin";
 
+    /**
+     * Encoding of tag ids and NDEF record fields in JSON
+     */
+    enum ByteEncoding {
+        /**
+         * Array of numbers, compatible with all plugin versions
+         */
+        ARRAY,
+        /**
+         * Base64 string
+         */
+        BASE64;
+
+        static ByteEncoding fromString(String value) {
+            for (ByteEncoding encoding : values()) {
+                if (encoding.name().equalsIgnoreCase(value)) {
+                    return encoding;
+                }
+            }
+            throw new IllegalArgumentException("Unknown NDEF encoding \"" + value + "\". Expecting \"array\" or \"base64\"");
+        }
+    }
+
     static JSONObject ndefToJSON(Ndef ndef) {
+        return ndefToJSON(ndef, ByteEncoding.ARRAY);
+    }
+
+    static JSONObject ndefToJSON(Ndef ndef, ByteEncoding encoding) {
         JSONObject json = new JSONObject();
 
         if (ndef != null) {
@@ -26,22 +54,13 @@ public class Util {
                 Tag tag = ndef.getTag();
                 // tag is going to be null for NDEF_FORMATABLE until NfcUtil.parseMessage is refactored
                 if (tag != null) {
-                    json.put("id", byteArrayToJSON(tag.getId()));
+                    json.put("id", bytesToJSON(tag.getId(), encoding));
                     json.put("techTypes", new JSONArray(Arrays.asList(tag.getTechList())));
                 }
+                putEncoding(json, encoding);
 
-                json.put("type", translateType(ndef.getType()));
-                json.put("maxSize", ndef.getMaxSize());
-                json.put("isWritable", ndef.isWritable());
-                json.put("ndefMessage", messageToJSON(ndef.getCachedNdefMessage()));
-                // Workaround for bug in ICS (Android 4.0 and 4.0.1) where
-                // mTag.getTagService(); of the Ndef object sometimes returns null
-                // see http://issues.mroland.at/index.php?do=details&task_id=47
-                try {
-                  json.put("canMakeReadOnly", ndef.canMakeReadOnly());
-                } catch (NullPointerException e) {
-                  json.put("canMakeReadOnly", JSONObject.NULL);
-                }
+                putNdefCapabilities(json, ndef);
+                json.put("ndefMessage", messageToJSON(ndef.getCachedNdefMessage(), encoding));
             } catch (JSONException e) {
                 Log.e(TAG, "Failed to convert ndef into json: " + ndef.toString(), e);
             }
@@ -49,13 +68,35 @@ public class Util {
         return json;
     }
 
+    /**
+     * Put type, maxSize, isWritable and canMakeReadOnly of the NDEF tag
+     */
+    static void putNdefCapabilities(JSONObject json, Ndef ndef) throws JSONException {
+        json.put("type", translateType(ndef.getType()));
+        json.put("maxSize", ndef.getMaxSize());
+        json.put("isWritable", ndef.isWritable());
+        // Workaround for bug in ICS (Android 4.0 and 4.0.1) where
+        // mTag.getTagService(); of the Ndef object sometimes returns null
+        // see http://issues.mroland.at/index.php?do=details&task_id=47
+        try {
+          json.put("canMakeReadOnly", ndef.canMakeReadOnly());
+        } catch (NullPointerException e) {
+          json.put("canMakeReadOnly", JSONObject.NULL);
+        }
+    }
+
     static JSONObject tagToJSON(Tag tag) {
+        return tagToJSON(tag, ByteEncoding.ARRAY);
+    }
+
+    static JSONObject tagToJSON(Tag tag, ByteEncoding encoding) {
         JSONObject json = new JSONObject();
 
         if (tag != null) {
             try {
-                json.put("id", byteArrayToJSON(tag.getId()));
+                json.put("id", bytesToJSON(tag.getId(), encoding));
                 json.put("techTypes", new JSONArray(Arrays.asList(tag.getTechList())));
+                putEncoding(json, encoding);
             } catch (JSONException e) {
                 Log.e(TAG, "Failed to convert tag into json: " + tag.toString(), e);
             }
@@ -79,15 +120,18 @@ public class Util {
         return translation;
     }
 
+    /**
+     * Records fields can be arrays of numbers or base64 strings
+     */
     static NdefRecord[] jsonToNdefRecords(String ndefMessageAsJSON) throws JSONException {
         JSONArray jsonRecords = new JSONArray(ndefMessageAsJSON);
         NdefRecord[] records = new NdefRecord[jsonRecords.length()];
         for (int i = 0; i < jsonRecords.length(); i++) {
             JSONObject record = jsonRecords.getJSONObject(i);
             byte tnf = (byte) record.getInt("tnf");
-            byte[] type = jsonToByteArray(record.getJSONArray("type"));
-            byte[] id = jsonToByteArray(record.getJSONArray("id"));
-            byte[] payload = jsonToByteArray(record.getJSONArray("payload"));
+            byte[] type = jsonToBytes(record.get("type"));
+            byte[] id = jsonToBytes(record.get("id"));
+            byte[] payload = jsonToBytes(record.get("payload"));
             records[i] = new NdefRecord(tnf, type, id, payload);
         }
         return records;
@@ -109,7 +153,41 @@ public class Util {
         return b;
     }
 
+    static Object bytesToJSON(byte[] bytes, ByteEncoding encoding) {
+        if (encoding == ByteEncoding.BASE64) {
+            return Base64.encodeToString(bytes, Base64.NO_WRAP);
+        }
+        return byteArrayToJSON(bytes);
+    }
+
+    /**
+     * @param json array of numbers or base64 string
+     */
+    static byte[] jsonToBytes(Object json) throws JSONException {
+        if (json instanceof JSONArray) {
+            return jsonToByteArray((JSONArray) json);
+        }
+        if (json instanceof String) {
+            try {
+                return Base64.decode((String) json, Base64.DEFAULT);
+            } catch (IllegalArgumentException e) {
+                throw new JSONException("Invalid base64 string: " + e.getMessage());
+            }
+        }
+        throw new JSONException("Expecting an array of numbers or a base64 string but found " + json);
+    }
+
+    static void putEncoding(JSONObject json, ByteEncoding encoding) throws JSONException {
+        if (encoding != ByteEncoding.ARRAY) {
+            json.put("encoding", encoding.name().toLowerCase());
+        }
+    }
+
     static JSONArray messageToJSON(NdefMessage message) {
+        return messageToJSON(message, ByteEncoding.ARRAY);
+    }
+
+    static JSONArray messageToJSON(NdefMessage message, ByteEncoding encoding) {
         if (message == null) {
             return null;
         }
@@ -117,19 +195,23 @@ public class Util {
         List<JSONObject> list = new ArrayList<JSONObject>();
 
         for (NdefRecord ndefRecord : message.getRecords()) {
-            list.add(recordToJSON(ndefRecord));
+            list.add(recordToJSON(ndefRecord, encoding));
         }
 
         return new JSONArray(list);
     }
 
     static JSONObject recordToJSON(NdefRecord record) {
+        return recordToJSON(record, ByteEncoding.ARRAY);
+    }
+
+    static JSONObject recordToJSON(NdefRecord record, ByteEncoding encoding) {
         JSONObject json = new JSONObject();
         try {
             json.put("tnf", record.getTnf());
-            json.put("type", byteArrayToJSON(record.getType()));
-            json.put("id", byteArrayToJSON(record.getId()));
-            json.put("payload", byteArrayToJSON(record.getPayload()));
+            json.put("type", bytesToJSON(record.getType(), encoding));
+            json.put("id", bytesToJSON(record.getId(), encoding));
+            json.put("payload", bytesToJSON(record.getPayload(), encoding));
         } catch (JSONException e) {
             //Not sure why this would happen, documentation is unclear.
             Log.e(TAG, "Failed to convert ndef record into json: " + record.toString(), e);
@@ -0,0 +1,129 @@
+package com.chariotsolutions.nfc.plugin;
+
+import org.json.JSONArray;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MailboxPollingSchedulerTest {
+
+    private static final byte[] TAG_ID = new byte[]{(byte) 0xE0, 0x02, 0x26, 0x11, 0x22, 0x33, 0x44, 0x55};
+
+    private final MailboxPollingScheduler scheduler = new MailboxPollingScheduler();
+
+    @Test
+    public void sizeClasses() {
+        assertEquals(0, MailboxPollingScheduler.getSizeClass(0));
+        assertEquals(1, MailboxPollingScheduler.getSizeClass(1));
+        assertEquals(2, MailboxPollingScheduler.getSizeClass(2));
+        assertEquals(2, MailboxPollingScheduler.getSizeClass(3));
+        assertEquals(3, MailboxPollingScheduler.getSizeClass(4));
+        assertEquals(8, MailboxPollingScheduler.getSizeClass(255));
+        assertEquals(9, MailboxPollingScheduler.getSizeClass(256));
+        assertEquals(11, MailboxPollingScheduler.getSizeClass(1 << 20));
+    }
+
+    @Test
+    public void statsAreKeptPerTagAndSizeClass() {
+        MailboxPollingScheduler.LatencyStats stats = scheduler.getStats(TAG_ID, 4);
+        assertSame(stats, scheduler.getStats(TAG_ID, 7));
+        assertNotSame(stats, scheduler.getStats(TAG_ID, 8));
+        assertNotSame(stats, scheduler.getStats("0102030405060708", 4));
+    }
+
+    @Test
+    public void coldExchangeBacksOffExponentially() {
+        MailboxPollingScheduler.LatencyStats stats = scheduler.getStats(TAG_ID, 10);
+
+        assertEquals(50, scheduler.getInitialPollingDelay(stats, 0, 50));
+        assertEquals(30, scheduler.getInitialPollingDelay(stats, 20, 50));
+        assertEquals(50, scheduler.getNextPollingDelay(stats, 0, 0, 50));
+        assertEquals(100, scheduler.getNextPollingDelay(stats, 50, 50, 50));
+        assertEquals(200, scheduler.getNextPollingDelay(stats, 150, 100, 50));
+    }
+
+    @Test
+    public void learnedExchangePollsAroundPredictedLatency() {
+        MailboxPollingScheduler.LatencyStats stats = scheduler.getStats(TAG_ID, 10);
+        for (int i = 0; i < 50; i++) {
+            scheduler.onResponse(stats, 100);
+        }
+        assertEquals(100, stats.getMean());
+
+        long windowStart = stats.getWindowStart();
+        long windowEnd = stats.getWindowEnd();
+        assertTrue(windowStart <= 100 && windowEnd >= 100);
+
+        // First poll at the start of the predicted window
+        assertEquals(windowStart - 10, scheduler.getInitialPollingDelay(stats, 10, 50));
+        // Dense polling within the window
+        long delay = scheduler.getNextPollingDelay(stats, 100, 0, 50);
+        assertTrue(delay >= 5 && delay <= 20);
+        // Exponential backoff past the tail
+        long tailDelay = scheduler.getNextPollingDelay(stats, windowEnd + 1, 40, 50);
+        assertEquals(80, tailDelay);
+    }
+
+    @Test
+    public void learnedWindowShorterThanDefaultDelayIsPolledEarlier() {
+        MailboxPollingScheduler.LatencyStats stats = scheduler.getStats(TAG_ID, 10);
+        for (int i = 0; i < 50; i++) {
+            scheduler.onResponse(stats, 20);
+        }
+
+        assertEquals(stats.getWindowStart(), scheduler.getInitialPollingDelay(stats, 0, 70));
+        assertTrue(scheduler.getInitialPollingDelay(stats, 0, 70) <= 20);
+    }
+
+    @Test
+    public void responsesAreClassifiedAgainstPrediction() throws Exception {
+        MailboxPollingScheduler.LatencyStats stats = scheduler.getStats(TAG_ID, 10);
+        scheduler.onExchangeStarted(stats);
+        scheduler.onResponse(stats, 100);
+        scheduler.onExchangeStarted(stats);
+        scheduler.onResponse(stats, 100);
+        scheduler.onPoll(false);
+        scheduler.onPoll(true);
+
+        assertEquals(2, scheduler.toJSON().getLong("exchanges"));
+        assertEquals(1, scheduler.toJSON().getLong("coldExchanges"));
+        assertEquals(1, scheduler.toJSON().getLong("predictedHits"));
+        assertEquals(2, scheduler.toJSON().getLong("polls"));
+        assertEquals(1, scheduler.toJSON().getLong("misses"));
+    }
+
+    @Test
+    public void latenciesRoundTrip() throws Exception {
+        MailboxPollingScheduler.LatencyStats stats = scheduler.getStats(TAG_ID, 10);
+        scheduler.onResponse(stats, 80);
+        scheduler.onResponse(stats, 120);
+        JSONArray latencies = scheduler.exportLatencies(TAG_ID);
+        assertEquals(1, latencies.length());
+
+        MailboxPollingScheduler other = new MailboxPollingScheduler();
+        other.importLatencies(TAG_ID, latencies);
+        MailboxPollingScheduler.LatencyStats imported = other.getStats(TAG_ID, 10);
+        assertEquals(stats.getMean(), imported.getMean());
+        assertEquals(stats.getDeviation(), imported.getDeviation());
+        assertEquals(2, imported.getSampleCount());
+    }
+
+    @Test
+    public void importDoesNotOverrideLearnedLatencies() throws Exception {
+        MailboxPollingScheduler.LatencyStats stats = scheduler.getStats(TAG_ID, 10);
+        scheduler.onResponse(stats, 80);
+        JSONArray latencies = scheduler.exportLatencies(TAG_ID);
+
+        MailboxPollingScheduler other = new MailboxPollingScheduler();
+        MailboxPollingScheduler.LatencyStats learned = other.getStats(TAG_ID, 10);
+        other.onResponse(learned, 300);
+        other.importLatencies(TAG_ID, latencies);
+
+        assertEquals(300, learned.getMean());
+        assertFalse(other.getStats(TAG_ID, 100).hasSamples());
+    }
+}
@@ -0,0 +1,241 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.nfc.Tag;
+import android.nfc.tech.NfcV;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Request frames sent to the tag, checked byte by byte
+ */
+public class NFC5ProtocolTest {
+
+    private static final byte[] UID = new byte[]{(byte) 0xE0, 0x02, 0x26, 0x11, 0x22, 0x33, 0x44, 0x55};
+
+    private NfcV nfcV;
+    private NFC5Protocol protocol;
+    /**
+     * Copies of the frames sent, frames are reused by the protocol
+     */
+    private final List<byte[]> frames = new ArrayList<>();
+    /**
+     * Frames sent, as given to the tag
+     */
+    private final List<byte[]> sentFrames = new ArrayList<>();
+    /**
+     * Response messages read from the mailbox, in order
+     */
+    private final List<byte[]> responses = new ArrayList<>();
+    /**
+     * MB_CTRL_DYN value answered by the tag, default mailbox enabled and message put by host
+     */
+    private byte mbCtrlDyn = 0x03;
+    /**
+     * True to fail the FAST_* exchanges with an I/O error
+     */
+    private boolean fastCommandsFailing = false;
+
+    @Before
+    public void setUp() throws Exception {
+        Tag tag = mock(Tag.class);
+        when(tag.getId()).thenReturn(UID);
+        nfcV = mock(NfcV.class);
+        when(nfcV.isConnected()).thenReturn(true);
+        when(nfcV.transceive(any(byte[].class))).thenAnswer(invocation -> {
+            byte[] request = invocation.getArgument(0);
+            frames.add(request.clone());
+            sentFrames.add(request);
+            if (fastCommandsFailing && (request[1] & 0xF0) == 0xC0) {
+                throw new IOException("Tag response cannot be decoded");
+            }
+            switch (request[1]) {
+                case NFC5Protocol.ISO15693_CUSTOM_ST_CMD_READ_DYN_CONFIG:
+                    return new byte[]{0x00, mbCtrlDyn};
+                case NFC5Protocol.ISO15693_CUSTOM_ST25DV_CMD_READ_MB_MSG_LENGTH:
+                    return new byte[]{0x00, (byte) (responses.get(0).length - 1)};
+                case NFC5Protocol.ISO15693_CUSTOM_ST25DV_CMD_READ_MB_MSG:
+                    byte[] message = responses.remove(0);
+                    byte[] response = new byte[1 + message.length];
+                    System.arraycopy(message, 0, response, 1, message.length);
+                    return response;
+                default:
+                    return new byte[]{0x00};
+            }
+        });
+        protocol = new NFC5Protocol(tag, nfcV);
+    }
+
+    @Test
+    public void writeMsgFrame() throws Exception {
+        protocol.writeMsg(new byte[]{0x0A, 0x0B, 0x0C});
+
+        assertArrayEquals(new byte[]{
+                NFC5Protocol.FLAG_HIGH_DATA_RATE,
+                NFC5Protocol.ISO15693_CUSTOM_ST25DV_CMD_WRITE_MB_MSG,
+                NFC5Protocol.STM_MANUFACTURER_CODE,
+                0x02, // message length - 1
+                0x0A, 0x0B, 0x0C
+        }, frames.get(0));
+    }
+
+    @Test
+    public void writeMsgFrameInAddressedMode() throws Exception {
+        protocol.setAddressedModeEnabled(true);
+        protocol.writeMsg(new byte[]{0x0A, 0x0B, 0x0C});
+
+        byte[] expected = new byte[3 + UID.length + 4];
+        expected[0] = NFC5Protocol.FLAG_HIGH_DATA_RATE | NFC5Protocol.FLAG_ADDRESSED;
+        expected[1] = NFC5Protocol.ISO15693_CUSTOM_ST25DV_CMD_WRITE_MB_MSG;
+        expected[2] = NFC5Protocol.STM_MANUFACTURER_CODE;
+        System.arraycopy(UID, 0, expected, 3, UID.length);
+        expected[11] = 0x02;
+        expected[12] = 0x0A;
+        expected[13] = 0x0B;
+        expected[14] = 0x0C;
+        assertArrayEquals(expected, frames.get(0));
+    }
+
+    @Test
+    public void writeMsgFrameWithFastTransfer() throws Exception {
+        protocol.setFastTransferEnabled(true);
+        protocol.writeMsg(new byte[]{0x0A});
+
+        assertArrayEquals(new byte[]{
+                NFC5Protocol.FLAG_HIGH_DATA_RATE,
+                NFC5Protocol.ISO15693_CUSTOM_ST25DV_CMD_FAST_WRITE_MB_MSG,
+                NFC5Protocol.STM_MANUFACTURER_CODE,
+                0x00,
+                0x0A
+        }, frames.get(0));
+    }
+
+    @Test
+    public void fastWriteFailureDoesNotWriteTwice() throws Exception {
+        protocol.setFastTransferEnabled(true);
+        fastCommandsFailing = true;
+        // Message received by the mailbox, response lost
+        mbCtrlDyn = (byte) 0x85;
+
+        // No made-up tag response
+        assertNull(protocol.writeMsg(new byte[]{0x0A}));
+
+        assertFalse(protocol.isFastTransferActive());
+        assertEquals(2, frames.size());
+        assertEquals(NFC5Protocol.ISO15693_CUSTOM_ST25DV_CMD_FAST_WRITE_MB_MSG, frames.get(0)[1]);
+        assertEquals(NFC5Protocol.ISO15693_CUSTOM_ST_CMD_READ_DYN_CONFIG, frames.get(1)[1]);
+    }
+
+    @Test
+    public void fastWriteFailureWritesAgainWhenMessageIsLost() throws Exception {
+        protocol.setFastTransferEnabled(true);
+        fastCommandsFailing = true;
+        // Mailbox enabled and empty
+        mbCtrlDyn = 0x01;
+
+        assertNotNull(protocol.writeMsg(new byte[]{0x0A}));
+        assertNotNull(protocol.writeMsg(new byte[]{0x0B}));
+
+        assertFalse(protocol.isFastTransferActive());
+        assertEquals(4, frames.size());
+        assertEquals(NFC5Protocol.ISO15693_CUSTOM_ST25DV_CMD_WRITE_MB_MSG, frames.get(2)[1]);
+        // Fast commands are not tried again
+        assertEquals(NFC5Protocol.ISO15693_CUSTOM_ST25DV_CMD_WRITE_MB_MSG, frames.get(3)[1]);
+    }
+
+    @Test
+    public void commandsOfSameFrameSizeDoNotShareFrames() throws Exception {
+        responses.add(new byte[5]);
+        responses.add(new byte[5]);
+        // Read message and write dynamic register both have 2 parameters
+        protocol.readMsg((byte) 0, 5);
+        protocol.writeDynConfig(NFC5Protocol.MB_CTRL_DYN, (byte) 0x01, NFC5Protocol.FLAG_HIGH_DATA_RATE);
+        protocol.readMsg((byte) 0, 5);
+
+        byte[] readFrame = new byte[]{
+                NFC5Protocol.FLAG_HIGH_DATA_RATE,
+                NFC5Protocol.ISO15693_CUSTOM_ST25DV_CMD_READ_MB_MSG,
+                NFC5Protocol.STM_MANUFACTURER_CODE,
+                0x00, 0x05
+        };
+        assertArrayEquals(readFrame, frames.get(0));
+        assertArrayEquals(new byte[]{
+                NFC5Protocol.FLAG_HIGH_DATA_RATE,
+                NFC5Protocol.ISO15693_CUSTOM_ST_CMD_WRITE_DYN_CONFIG,
+                NFC5Protocol.STM_MANUFACTURER_CODE,
+                NFC5Protocol.MB_CTRL_DYN, 0x01
+        }, frames.get(1));
+        assertArrayEquals(readFrame, frames.get(2));
+        assertNotSame(sentFrames.get(0), sentFrames.get(1));
+        assertSame(sentFrames.get(0), sentFrames.get(2));
+        assertArrayEquals(readFrame, sentFrames.get(0));
+    }
+
+    @Test
+    public void readDynConfigFrame() throws Exception {
+        protocol.probe();
+
+        assertArrayEquals(new byte[]{
+                NFC5Protocol.FLAG_HIGH_DATA_RATE,
+                NFC5Protocol.ISO15693_CUSTOM_ST_CMD_READ_DYN_CONFIG,
+                NFC5Protocol.STM_MANUFACTURER_CODE,
+                NFC5Protocol.MB_CTRL_DYN
+        }, frames.get(0));
+    }
+
+    @Test
+    public void transceiveSegments() throws Exception {
+        protocol.setSegmentedTransferEnabled(true);
+        byte[] request = new byte[NFC5Protocol.SEGMENT_MAX_PAYLOAD_SIZE + 2];
+        for (int i = 0; i < request.length; i++) {
+            request[i] = (byte) i;
+        }
+        // Response segments: segment header then payload
+        responses.add(new byte[]{NFC5Protocol.SEGMENT_FLAG_MORE, 0x01, 0x02});
+        responses.add(new byte[]{0x01, 0x03});
+
+        byte[] response = protocol.transceiveISO15693(request);
+
+        assertArrayEquals(new byte[]{0x01, 0x02, 0x03}, response);
+        List<byte[]> writes = new ArrayList<>();
+        for (byte[] frame : frames) {
+            if (frame[1] == NFC5Protocol.ISO15693_CUSTOM_ST25DV_CMD_WRITE_MB_MSG) {
+                writes.add(frame);
+            }
+        }
+        assertEquals(2, writes.size());
+
+        byte[] first = writes.get(0);
+        assertEquals(3 + 1 + NFC5Protocol.MAILBOX_MAX_MESSAGE_SIZE, first.length);
+        assertEquals((byte) (NFC5Protocol.MAILBOX_MAX_MESSAGE_SIZE - 1), first[3]);
+        assertEquals(NFC5Protocol.SEGMENT_FLAG_MORE, first[4]);
+        assertArrayEquals(Arrays.copyOfRange(request, 0, NFC5Protocol.SEGMENT_MAX_PAYLOAD_SIZE),
+                Arrays.copyOfRange(first, 5, first.length));
+
+        byte[] second = writes.get(1);
+        assertArrayEquals(new byte[]{
+                NFC5Protocol.FLAG_HIGH_DATA_RATE,
+                NFC5Protocol.ISO15693_CUSTOM_ST25DV_CMD_WRITE_MB_MSG,
+                NFC5Protocol.STM_MANUFACTURER_CODE,
+                0x02, // segment header + 2 bytes - 1
+                0x01, // last segment, sequence 1
+                request[request.length - 2], request[request.length - 1]
+        }, second);
+    }
+}
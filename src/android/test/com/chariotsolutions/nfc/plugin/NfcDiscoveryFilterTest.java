@@ -0,0 +1,89 @@
+package com.chariotsolutions.nfc.plugin;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NfcDiscoveryFilterTest {
+
+    private static final long TIMEOUT = 5;  // in s
+
+    private final NfcExecutor executor = new NfcExecutor();
+    private final List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void noFilterDeliversEveryDiscoveryInOrder() throws Exception {
+        NfcDiscoveryFilter filter = new NfcDiscoveryFilter(executor, NfcDiscoveryFilter.MODE_NONE, 1000);
+        CountDownLatch done = new CountDownLatch(3);
+        filter.submit("A", discovery("A1", done), 0);
+        filter.submit("A", discovery("A2", done), 10);
+        filter.submit("B", discovery("B1", done), 20);
+
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("A1", "A2", "B1"), delivered);
+    }
+
+    @Test
+    public void debounceDropsRepeatsWithinWindow() throws Exception {
+        NfcDiscoveryFilter filter = new NfcDiscoveryFilter(executor, NfcDiscoveryFilter.MODE_DEBOUNCE, 1000);
+        CountDownLatch done = new CountDownLatch(4);
+        filter.submit("A", discovery("A1", done), 0);
+        filter.submit("B", discovery("B1", done), 100);
+        filter.submit("A", discovery("A2", done), 500);
+        // Window restarts at each discovery
+        filter.submit("A", discovery("A3", done), 1400);
+        filter.submit("A", discovery("A4", done), 2400);
+        filter.submit(null, discovery("none", done), 2500);
+
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("A1", "B1", "A4", "none"), delivered);
+        JSONObject json = filter.toJSON();
+        assertEquals(6, json.getLong("received"));
+        assertEquals(4, json.getLong("delivered"));
+        assertEquals(2, json.getLong("debounced"));
+    }
+
+    @Test
+    public void coalesceDeliversLastDiscoveryAtEndOfWindow() throws Exception {
+        NfcDiscoveryFilter filter = new NfcDiscoveryFilter(executor, NfcDiscoveryFilter.MODE_COALESCE, 100);
+        CountDownLatch done = new CountDownLatch(2);
+        filter.submit("A", discovery("A1", done), 0);
+        filter.submit("B", discovery("B1", done), 0);
+        filter.submit("A", discovery("A2", done), 10);
+        filter.submit("A", discovery("A3", done), 20);
+        assertTrue(delivered.isEmpty());
+
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(2, delivered.size());
+        assertTrue(delivered.containsAll(Arrays.asList("A3", "B1")));
+        JSONObject json = filter.toJSON();
+        assertEquals(2, json.getLong("coalesced"));
+        assertEquals(2, json.getLong("suppressed"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownMode() {
+        new NfcDiscoveryFilter(executor, "throttle", 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeWindow() {
+        new NfcDiscoveryFilter(executor, NfcDiscoveryFilter.MODE_DEBOUNCE, -1);
+    }
+
+    private Runnable discovery(final String name, final CountDownLatch done) {
+        return () -> {
+            delivered.add(name);
+            done.countDown();
+        };
+    }
+}
@@ -0,0 +1,95 @@
+package com.chariotsolutions.nfc.plugin;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class NfcEventBufferTest {
+
+    private final NfcEventBuffer buffer = new NfcEventBuffer();
+
+    @Test
+    public void eventsAreNumberedInOrder() throws Exception {
+        JSONObject first = event("tag");
+        assertEquals(1, buffer.add(first, true, 0));
+        assertEquals(2, buffer.add(event("tag"), true, 0));
+        assertEquals(1, first.getLong("seq"));
+        assertEquals(2, buffer.toJSON().getLong("lastSeq"));
+    }
+
+    @Test
+    public void pendingEventsAreTakenOnce() throws Exception {
+        buffer.add(event("tag"), true, 0);
+        buffer.add(event("ndef"), false, 0);
+        buffer.add(event("tag"), false, 0);
+
+        JSONArray pending = buffer.takePending(0);
+        assertEquals(2, pending.length());
+        assertEquals(2, pending.getJSONObject(0).getLong("seq"));
+        assertEquals(3, pending.getJSONObject(1).getLong("seq"));
+        assertEquals(0, buffer.takePending(0).length());
+        assertEquals(0, buffer.toJSON().getLong("pending"));
+    }
+
+    @Test
+    public void getSinceReturnsMissedEvents() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            buffer.add(event("tag"), true, 0);
+        }
+
+        JSONArray missed = buffer.getSince(3, 0);
+        assertEquals(2, missed.length());
+        assertEquals(4, missed.getJSONObject(0).getLong("seq"));
+        assertEquals(5, missed.getJSONObject(1).getLong("seq"));
+        assertEquals(5, buffer.getSince(0, 0).length());
+        assertEquals(0, buffer.getSince(5, 0).length());
+    }
+
+    @Test
+    public void eventsExpireAfterRetentionOfTheirType() throws Exception {
+        buffer.setDefaultRetention(1000);
+        buffer.setRetention("ndef", 5000);
+        buffer.add(event("tag"), false, 0);
+        buffer.add(event("ndef"), false, 0);
+
+        assertEquals(2, buffer.getSince(0, 999).length());
+        JSONArray kept = buffer.getSince(0, 1000);
+        assertEquals(1, kept.length());
+        assertEquals("ndef", kept.getJSONObject(0).getString("type"));
+        assertEquals(0, buffer.getSince(0, 5000).length());
+        assertEquals(2, buffer.toJSON().getLong("expired"));
+    }
+
+    @Test
+    public void zeroRetentionDoesNotKeepEvent() throws Exception {
+        buffer.setRetention("tag", 0);
+        assertEquals(1, buffer.add(event("tag"), false, 0));
+
+        assertEquals(0, buffer.takePending(0).length());
+        JSONObject json = buffer.toJSON();
+        assertEquals(0, json.getLong("size"));
+        assertEquals(1, json.getLong("expired"));
+    }
+
+    @Test
+    public void oldestEventsAreDroppedWhenFull() throws Exception {
+        for (int i = 0; i < 70; i++) {
+            buffer.add(event("tag"), false, 0);
+        }
+
+        JSONObject json = buffer.toJSON();
+        assertEquals(64, json.getLong("size"));
+        assertEquals(6, json.getLong("overflowed"));
+        JSONArray pending = buffer.takePending(0);
+        assertEquals(64, pending.length());
+        assertEquals(7, pending.getJSONObject(0).getLong("seq"));
+    }
+
+    private static JSONObject event(String type) throws Exception {
+        JSONObject event = new JSONObject();
+        event.put("type", type);
+        return event;
+    }
+}
@@ -0,0 +1,121 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.nfc.NdefMessage;
+import android.nfc.NdefRecord;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NfcEventFilterTest {
+
+    private static final String NFCV = "android.nfc.tech.NfcV";
+    private static final String NDEF = "android.nfc.tech.Ndef";
+    private static final String ISODEP = "android.nfc.tech.IsoDep";
+
+    private final NfcEventFilter filter = new NfcEventFilter();
+
+    @Test
+    public void withoutSubscriptionEventsHaveDefaultDetail() throws Exception {
+        TagSnapshot snapshot = snapshot("E0022611223344", null, NFCV);
+        assertEquals(NfcEventFilter.DETAIL_FULL, filter.match("tag", snapshot));
+
+        filter.setDefaultDetail(NfcEventFilter.DETAIL_ID);
+        assertEquals(NfcEventFilter.DETAIL_ID, filter.match("tag", snapshot));
+    }
+
+    @Test
+    public void allCriteriaMustMatch() throws Exception {
+        filter.subscribe(new JSONObject()
+                .put("types", new JSONArray(Arrays.asList("tag", "ndef")))
+                .put("techs", "NfcV")
+                .put("uidPrefix", "e002")
+                .put("detail", NfcEventFilter.DETAIL_TAG));
+
+        assertEquals(NfcEventFilter.DETAIL_TAG, filter.match("ndef", snapshot("E0022611223344", null, NDEF, NFCV)));
+        assertNull(filter.match("mime", snapshot("E0022611223344", null, NFCV)));
+        assertNull(filter.match("tag", snapshot("E0022611223344", null, ISODEP)));
+        assertNull(filter.match("tag", snapshot("0422611223344", null, NFCV)));
+
+        JSONObject json = filter.toJSON();
+        assertEquals(1, json.getLong("matched"));
+        assertEquals(3, json.getLong("filtered"));
+    }
+
+    @Test
+    public void highestDetailOfMatchingSubscriptionsWins() throws Exception {
+        filter.subscribe(new JSONObject().put("detail", NfcEventFilter.DETAIL_ID));
+        filter.subscribe(new JSONObject().put("techs", "NfcV").put("detail", NfcEventFilter.DETAIL_SUMMARY));
+        filter.subscribe(new JSONObject().put("techs", "IsoDep").put("detail", NfcEventFilter.DETAIL_FULL));
+
+        assertEquals(NfcEventFilter.DETAIL_SUMMARY, filter.match("tag", snapshot("E002", null, NFCV)));
+        assertEquals(NfcEventFilter.DETAIL_FULL, filter.match("tag", snapshot("E002", null, ISODEP)));
+        assertEquals(NfcEventFilter.DETAIL_ID, filter.match("tag", snapshot("E002", null, NDEF)));
+    }
+
+    @Test
+    public void mimeTypeCriterionAcceptsWildcard() throws Exception {
+        filter.subscribe(new JSONObject().put("mimeTypes", "text/*"));
+        NdefMessage text = message(record("text/plain", "T"));
+        NdefMessage json = message(record("application/json", null));
+
+        assertEquals(NfcEventFilter.DETAIL_FULL, filter.match("ndef", snapshot("E002", text, NDEF)));
+        assertNull(filter.match("ndef", snapshot("E002", json, NDEF)));
+        assertNull(filter.match("tag", snapshot("E002", null, NFCV)));
+    }
+
+    @Test
+    public void recordTypeCriterion() throws Exception {
+        filter.subscribe(new JSONObject().put("recordTypes", new JSONArray(Arrays.asList("U", "Sp"))));
+
+        assertEquals(NfcEventFilter.DETAIL_FULL, filter.match("ndef", snapshot("E002", message(record(null, "T"), record(null, "U")), NDEF)));
+        assertNull(filter.match("ndef", snapshot("E002", message(record(null, "T")), NDEF)));
+    }
+
+    @Test
+    public void unsubscribe() throws Exception {
+        String id = filter.subscribe(new JSONObject().put("types", "ndef"));
+        filter.subscribe(new JSONObject().put("types", "mime"));
+        TagSnapshot snapshot = snapshot("E002", null, NFCV);
+        assertNull(filter.match("tag", snapshot));
+
+        assertEquals(1, filter.unsubscribe(id));
+        assertEquals(0, filter.unsubscribe(id));
+        assertEquals(1, filter.unsubscribe(null));
+        assertEquals(NfcEventFilter.DETAIL_FULL, filter.match("tag", snapshot));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownDetail() throws Exception {
+        filter.subscribe(new JSONObject().put("detail", "payload"));
+    }
+
+    private static TagSnapshot snapshot(String id, NdefMessage message, String... techs) {
+        TagSnapshot snapshot = mock(TagSnapshot.class);
+        when(snapshot.getId()).thenReturn(id);
+        when(snapshot.getTechList()).thenReturn(Arrays.asList(techs));
+        when(snapshot.getNdefMessage()).thenReturn(message);
+        return snapshot;
+    }
+
+    private static NdefMessage message(NdefRecord... records) {
+        NdefMessage message = mock(NdefMessage.class);
+        when(message.getRecords()).thenReturn(records);
+        return message;
+    }
+
+    private static NdefRecord record(String mimeType, String type) {
+        NdefRecord record = mock(NdefRecord.class);
+        when(record.toMimeType()).thenReturn(mimeType);
+        when(record.getType()).thenReturn(type != null ? type.getBytes(StandardCharsets.US_ASCII) : new byte[0]);
+        return record;
+    }
+}
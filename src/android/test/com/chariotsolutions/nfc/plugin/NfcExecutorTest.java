@@ -0,0 +1,93 @@
+package com.chariotsolutions.nfc.plugin;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NfcExecutorTest {
+
+    private static final long TIMEOUT = 5;  // in s
+
+    private final NfcExecutor executor = new NfcExecutor();
+
+    @Test
+    public void pendingOperationsOfLaneRunByPriorityThenInOrder() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(6);
+        final List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        // Lane is busy until released
+        executor.execute("tag", NfcExecutor.PRIORITY_INTERACTIVE, () -> {
+            await(release);
+            order.add("running");
+            done.countDown();
+        });
+        executor.execute("tag", NfcExecutor.PRIORITY_EVENT, record(order, "event", done));
+        executor.execute("tag", NfcExecutor.PRIORITY_BACKGROUND, record(order, "background1", done));
+        executor.execute("tag", NfcExecutor.PRIORITY_INTERACTIVE, record(order, "interactive1", done));
+        executor.execute("tag", NfcExecutor.PRIORITY_BACKGROUND, record(order, "background2", done));
+        executor.execute("tag", NfcExecutor.PRIORITY_INTERACTIVE, record(order, "interactive2", done));
+        release.countDown();
+
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("running", "interactive1", "interactive2", "background1", "background2", "event"), order);
+    }
+
+    @Test
+    public void lanesRunInParallel() throws Exception {
+        final CountDownLatch bothRunning = new CountDownLatch(2);
+        final CountDownLatch done = new CountDownLatch(2);
+        for (String lane : new String[]{"tag1", "tag2"}) {
+            executor.execute(lane, NfcExecutor.PRIORITY_INTERACTIVE, () -> {
+                bothRunning.countDown();
+                // Both operations must be running at the same time
+                await(bothRunning);
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failedOperationDoesNotBlockLane() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute("tag", NfcExecutor.PRIORITY_INTERACTIVE, () -> {
+            throw new IllegalStateException("Tag is closed");
+        });
+        executor.execute("tag", NfcExecutor.PRIORITY_INTERACTIVE, done::countDown);
+
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        JSONObject interactive = executor.toJSON().getJSONObject("priorities").getJSONObject("interactive");
+        assertEquals(1, interactive.getLong("failed"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPriority() {
+        executor.execute("tag", 3, () -> {
+        });
+    }
+
+    private static Runnable record(final List<String> order, final String name, final CountDownLatch done) {
+        return () -> {
+            order.add(name);
+            done.countDown();
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
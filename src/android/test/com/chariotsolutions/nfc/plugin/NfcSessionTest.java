@@ -0,0 +1,105 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.nfc.Tag;
+import android.nfc.TagLostException;
+import android.nfc.tech.IsoDep;
+import android.nfc.tech.NfcV;
+import android.nfc.tech.TagTechnology;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NfcSessionTest {
+
+    private static final byte[] UID = new byte[]{(byte) 0xE0, 0x02, 0x26, 0x11, 0x22, 0x33, 0x44, 0x55};
+
+    private final TagTechnologyAdapter adapter = mock(TagTechnologyAdapter.class);
+
+    @Test
+    public void connectedNfc5TapIsProbedWithMailboxRead() {
+        NFC5Protocol protocol = mock(NFC5Protocol.class);
+        when(protocol.isConnected()).thenReturn(true);
+        when(protocol.probe()).thenReturn(true, false);
+        NfcSession session = createSession(mock(NfcV.class), protocol);
+
+        assertTrue(session.isProbeSupported());
+        assertTrue(session.probe());
+        assertFalse(session.probe());
+    }
+
+    @Test
+    public void connectedNfc4TapIsProbedWithApplicationSelection() {
+        NFC4Protocol protocol = mock(NFC4Protocol.class);
+        when(protocol.isConnected()).thenReturn(true);
+        when(protocol.probe()).thenReturn(false);
+        IsoDep isoDep = mock(IsoDep.class);
+        // Cached connection state must not be taken as presence
+        when(isoDep.isConnected()).thenReturn(true);
+        NfcSession session = createSession(isoDep, protocol);
+
+        assertTrue(session.isProbeSupported());
+        assertFalse(session.probe());
+        verify(protocol).probe();
+    }
+
+    @Test
+    public void rawNfcVSessionIsProbedWithInventory() throws Exception {
+        NfcV nfcV = mock(NfcV.class);
+        when(nfcV.isConnected()).thenReturn(true);
+        when(adapter.transceive(any(TagTechnology.class), any(byte[].class)))
+                .thenReturn(new byte[10])
+                .thenThrow(new TagLostException());
+        NfcSession session = createSession(nfcV, mock(NFC5Protocol.class));
+
+        assertTrue(session.isProbeSupported());
+        assertTrue(session.probe());
+        assertFalse(session.probe());
+        verify(adapter, times(2)).transceive(nfcV, new byte[]{0x26, 0x01, 0x00});
+    }
+
+    @Test
+    public void rawIsoDepSessionCannotBeProbed() throws Exception {
+        IsoDep isoDep = mock(IsoDep.class);
+        when(isoDep.isConnected()).thenReturn(true);
+        NfcSession session = createSession(isoDep, mock(NFC4Protocol.class));
+
+        assertFalse(session.isProbeSupported());
+        assertFalse(session.probe());
+        verify(adapter, never()).transceive(any(TagTechnology.class), any(byte[].class));
+    }
+
+    @Test
+    public void nfc4ProbeSelectsLwm2mApplication() throws Exception {
+        Tag tag = mock(Tag.class);
+        when(tag.getId()).thenReturn(new byte[]{0x04, 0x11, 0x22, 0x33});
+        IsoDep isoDep = mock(IsoDep.class);
+        when(isoDep.isConnected()).thenReturn(true);
+        byte[][] sent = new byte[1][];
+        when(isoDep.transceive(any(byte[].class))).thenAnswer(invocation -> {
+            sent[0] = invocation.getArgument(0);
+            return new byte[]{(byte) 0x90, 0x00};
+        });
+        NFC4Protocol protocol = new NFC4Protocol(tag, isoDep);
+
+        assertTrue(protocol.probe());
+        assertArrayEquals(new byte[]{0x00, (byte) 0xA4, 0x04, 0x00, 0x07, (byte) 0xF0, 0x02, 0x4C, 0x77, 0x4D, 0x32, 0x4D}, sent[0]);
+
+        when(isoDep.transceive(any(byte[].class))).thenThrow(new TagLostException());
+        assertFalse(protocol.probe());
+    }
+
+    private NfcSession createSession(TagTechnology tagTechnology, NFCProtocol protocol) {
+        Tag tag = mock(Tag.class);
+        when(tag.getId()).thenReturn(UID);
+        return new NfcSession(tag, tagTechnology.getClass().getName(), adapter, tagTechnology, protocol, new NfcExecutor());
+    }
+}
@@ -0,0 +1,127 @@
+package com.chariotsolutions.nfc.plugin;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+
+public class NfcTraceBufferTest {
+
+    @Test
+    public void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(8, new NfcTraceBuffer(5).getCapacity());
+        assertEquals(8, new NfcTraceBuffer(8).getCapacity());
+        assertEquals(1024, new NfcTraceBuffer().getCapacity());
+    }
+
+    @Test
+    public void recordsAreDumpedOldestFirst() throws Exception {
+        NfcTraceBuffer buffer = new NfcTraceBuffer(8);
+        buffer.record(NfcTraceBuffer.TYPE_FRAME, 0xAA, NfcTraceBuffer.FLAG_FAST, 0x00, 12, 1, 0);
+        buffer.record(NfcTraceBuffer.TYPE_EXCHANGE, 0, NfcTraceBuffer.FLAG_RETRY, NfcTraceBuffer.RESULT_TIMEOUT, 12, 0, 0);
+
+        JSONObject json = buffer.toJSON();
+        assertEquals(2, json.getLong("recordCount"));
+        JSONArray records = json.getJSONArray("records");
+        assertEquals(2, records.length());
+
+        JSONArray first = records.getJSONArray(0);
+        assertEquals(0, first.getLong(0));
+        assertEquals(12, first.getInt(3));
+        assertEquals(1, first.getInt(4));
+        assertEquals(NfcTraceBuffer.TYPE_FRAME, first.getInt(5));
+        assertEquals(0xAA, first.getInt(6));
+        assertEquals(NfcTraceBuffer.FLAG_FAST, first.getInt(7));
+        assertEquals(0, first.getInt(8));
+
+        JSONArray second = records.getJSONArray(1);
+        assertEquals(1, second.getLong(0));
+        assertEquals(NfcTraceBuffer.RESULT_TIMEOUT, second.getInt(8));
+    }
+
+    @Test
+    public void oldestRecordsAreOverwritten() throws Exception {
+        NfcTraceBuffer buffer = new NfcTraceBuffer(4);
+        for (int i = 0; i < 10; i++) {
+            buffer.record(NfcTraceBuffer.TYPE_FRAME, i, 0, 0, i, 0, 0);
+        }
+
+        JSONArray records = buffer.toJSON().getJSONArray("records");
+        assertEquals(4, records.length());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(6 + i, records.getJSONArray(i).getLong(0));
+            assertEquals(6 + i, records.getJSONArray(i).getInt(6));
+        }
+        assertEquals(10, buffer.getRecordCount());
+    }
+
+    @Test
+    public void binaryDump() {
+        NfcTraceBuffer buffer = new NfcTraceBuffer(4);
+        buffer.record(NfcTraceBuffer.TYPE_FRAME, 0xAD, NfcTraceBuffer.FLAG_FAST, 0x01, 4, 2, 0);
+
+        byte[] dump = buffer.toByteArray();
+        assertEquals(NfcTraceBuffer.RECORD_SIZE, dump.length);
+        ByteBuffer record = ByteBuffer.wrap(dump).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0, record.getLong());
+        assertEquals(0, record.getLong());
+        record.getInt();
+        assertEquals(4, record.getShort());
+        assertEquals(2, record.getShort());
+        assertEquals(NfcTraceBuffer.TYPE_FRAME, record.get());
+        assertEquals((byte) 0xAD, record.get());
+        assertEquals(NfcTraceBuffer.FLAG_FAST, record.get());
+        assertEquals(0x01, record.get());
+    }
+
+    @Test
+    public void clearAndDisable() throws Exception {
+        NfcTraceBuffer buffer = new NfcTraceBuffer(4);
+        buffer.record(NfcTraceBuffer.TYPE_FRAME, 0xAA, 0, 0, 1, 1, 0);
+        buffer.clear();
+        assertEquals(0, buffer.toJSON().getJSONArray("records").length());
+
+        buffer.setEnabled(false);
+        buffer.record(NfcTraceBuffer.TYPE_FRAME, 0xAA, 0, 0, 1, 1, 0);
+        assertEquals(0, buffer.toByteArray().length);
+        assertEquals(1, buffer.getRecordCount());
+    }
+
+    @Test
+    public void concurrentWritersKeepRecordsConsistent() throws Exception {
+        final NfcTraceBuffer buffer = new NfcTraceBuffer(64);
+        Thread[] writers = new Thread[4];
+        for (int w = 0; w < writers.length; w++) {
+            final int writer = w;
+            writers[w] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    // Every field of a record holds the writer number
+                    buffer.record(writer, writer, writer, writer, writer, writer, 0);
+                }
+            });
+            writers[w].start();
+        }
+        for (int i = 0; i < 100; i++) {
+            assertRecordsConsistent(buffer.toJSON().getJSONArray("records"));
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(40000, buffer.getRecordCount());
+        assertRecordsConsistent(buffer.toJSON().getJSONArray("records"));
+    }
+
+    private static void assertRecordsConsistent(JSONArray records) throws Exception {
+        for (int i = 0; i < records.length(); i++) {
+            JSONArray record = records.getJSONArray(i);
+            int writer = record.getInt(3);
+            for (int field = 4; field < 9; field++) {
+                assertEquals(writer, record.getInt(field));
+            }
+        }
+    }
+}
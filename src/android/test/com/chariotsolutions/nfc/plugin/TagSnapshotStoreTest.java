@@ -0,0 +1,72 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.nfc.Tag;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TagSnapshotStoreTest {
+
+    private final TagSnapshotStore store = new TagSnapshotStore();
+
+    @Test
+    public void snapshotIsRegisteredOnce() {
+        TagSnapshot snapshot = snapshot(1);
+        String handle = store.register(snapshot, 0);
+
+        assertEquals("E002260000000001-1", handle);
+        assertEquals(handle, snapshot.getHandle());
+        assertEquals(handle, store.register(snapshot, 0));
+        assertNotEquals(handle, store.register(snapshot(1), 0));
+        assertSame(snapshot, store.get(handle, 0));
+    }
+
+    @Test
+    public void snapshotExpiresAfterTimeout() {
+        TagSnapshot snapshot = snapshot(1);
+        String handle = store.register(snapshot, 0);
+
+        assertSame(snapshot, store.get(handle, 60000));
+        assertNull(store.get(handle, 60001));
+    }
+
+    @Test
+    public void accessDoesNotExtendTimeout() {
+        String handle = store.register(snapshot(1), 0);
+        store.get(handle, 30000);
+        store.register(snapshot(2), 50000);
+
+        assertNull(store.get(handle, 60001));
+    }
+
+    @Test
+    public void leastRecentlyUsedSnapshotIsEvicted() {
+        String first = store.register(snapshot(0), 0);
+        String second = store.register(snapshot(1), 0);
+        for (int i = 2; i < 16; i++) {
+            store.register(snapshot(i), 0);
+        }
+        store.get(first, 0);
+        store.register(snapshot(16), 0);
+
+        assertNull(store.get(second, 0));
+        assertEquals("E002260000000000", store.get(first, 0).getId());
+    }
+
+    @Test
+    public void unknownHandle() {
+        assertNull(store.get("E002260000000001-1", 0));
+    }
+
+    private static TagSnapshot snapshot(int index) {
+        Tag tag = mock(Tag.class);
+        when(tag.getId()).thenReturn(new byte[]{(byte) 0xE0, 0x02, 0x26, 0x00, 0x00, 0x00, 0x00, (byte) index});
+        return new TagSnapshot(null, tag, null, Util.ByteEncoding.ARRAY);
+    }
+}
@@ -0,0 +1,130 @@
+package com.chariotsolutions.nfc.plugin;
+
+import android.nfc.Tag;
+
+import com.iotize.android.device.device.impl.IoTizeDevice;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TapSessionCacheTest {
+
+    private static final long IDLE_TIMEOUT = 1000;
+
+    private final TapSessionCache cache = new TapSessionCache(IDLE_TIMEOUT);
+
+    @Test
+    public void sessionIsReusedWithinIdleTimeout() {
+        TapSessionCache.TapSession session = createSession(1);
+        cache.put(session, 0);
+
+        assertSame(session, cache.get("E002260000000001", IDLE_TIMEOUT));
+        assertNull(cache.get("E002260000000002", IDLE_TIMEOUT));
+    }
+
+    @Test
+    public void idleSessionIsEvictedAndClosed() throws Exception {
+        TapSessionCache.TapSession session = createSession(1);
+        cache.put(session, 0);
+
+        assertNull(cache.get(session.getId(), IDLE_TIMEOUT + 1));
+        assertEquals(0, cache.size());
+        verify(session.getProtocol()).disconnect();
+    }
+
+    @Test
+    public void exchangeKeepsSessionAlive() {
+        TapSessionCache.TapSession session = createSession(1);
+        cache.put(session, 0);
+        cache.onExchange(session.getId(), IDLE_TIMEOUT);
+
+        assertSame(session, cache.get(session.getId(), 2 * IDLE_TIMEOUT));
+    }
+
+    @Test
+    public void leastRecentlyUsedSessionIsEvictedAndClosed() throws Exception {
+        TapSessionCache.TapSession first = createSession(0);
+        cache.put(first, 0);
+        for (int i = 1; i <= 8; i++) {
+            cache.put(createSession(i), 0);
+        }
+
+        assertEquals(8, cache.size());
+        assertNull(cache.get(first.getId(), 0));
+        verify(first.getProtocol()).disconnect();
+    }
+
+    @Test
+    public void replacedSessionIsClosed() throws Exception {
+        TapSessionCache.TapSession previous = createSession(1);
+        TapSessionCache.TapSession session = createSession(1);
+        cache.put(previous, 0);
+        cache.put(session, 0);
+
+        assertSame(session, cache.get(session.getId(), 0));
+        verify(previous.getProtocol()).disconnect();
+        verify(session.getProtocol(), never()).disconnect();
+    }
+
+    @Test
+    public void failedFirstExchangeOfReusedSessionDropsIt() throws Exception {
+        TapSessionCache.TapSession session = createSession(1);
+        cache.put(session, 0);
+        cache.onReused(session);
+        assertTrue(session.isReused());
+        assertFalse(session.isValidated());
+
+        assertSame(session, cache.onExchangeFailed(session.getId()));
+        assertEquals(0, cache.size());
+        verify(session.getProtocol()).disconnect();
+    }
+
+    @Test
+    public void failedExchangeOfValidatedSessionKeepsIt() throws Exception {
+        TapSessionCache.TapSession session = createSession(1);
+        cache.put(session, 0);
+        cache.onReused(session);
+        cache.onExchange(session.getId(), 0);
+        assertTrue(session.isValidated());
+
+        assertNull(cache.onExchangeFailed(session.getId()));
+        assertEquals(1, cache.size());
+        verify(session.getProtocol(), never()).disconnect();
+    }
+
+    @Test
+    public void disabledCacheKeepsNothing() {
+        TapSessionCache disabled = new TapSessionCache(0);
+        disabled.put(createSession(1), 0);
+
+        assertFalse(disabled.isEnabled());
+        assertEquals(0, disabled.size());
+    }
+
+    @Test
+    public void clearClosesSessions() throws Exception {
+        TapSessionCache.TapSession session = createSession(1);
+        cache.put(session, 0);
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        verify(session.getProtocol()).disconnect();
+    }
+
+    private static TapSessionCache.TapSession createSession(int index) {
+        Tag tag = mock(Tag.class);
+        when(tag.getId()).thenReturn(new byte[]{(byte) 0xE0, 0x02, 0x26, 0x00, 0x00, 0x00, 0x00, (byte) index});
+        NFCProtocol protocol = mock(NFCProtocol.class);
+        when(protocol.getTag()).thenReturn(tag);
+        return new TapSessionCache.TapSession(mock(IoTizeDevice.class), protocol, true, true);
+    }
+}
@@ -10,8 +10,9 @@
 export interface CordovaInterface {
   /**
    * Close current nfc tag
+   * @param sessionId Android only. Session to close, the current session if not given
    */
-  close(): Promise<void>;
+  close(sessionId?: string): Promise<void>;
 
   /**
    * Connect to current Tap nfc tag
@@ -26,26 +27,385 @@ export interface CordovaInterface {
   /**
    * Transeive data using Tap NFC communication protocol
    * @param data ArrayBuffer or string of hex data for transcieve
+   * @param sessionId Android only. Session of the tag, the current session if not given
+   * @param options Android only. Deadline and id of the request
+   * @return response as an ArrayBuffer (Android) or as a string of hex data (iOS, Android hex result mode)
    */
-  transceiveTap(data: ArrayBuffer | string): Promise<string>;
+  transceiveTap(data: ArrayBuffer | string, sessionId?: string, options?: NfcRequestOptions): Promise<ArrayBuffer | string>;
+
+  /**
+   * Android only. Transceive several requests using Tap NFC communication protocol.
+   * Requests are sent one after another on the native side, the batch stops at the first failed request.
+   * @param frames requests, ArrayBuffer or string of hex data
+   * @param sessionId Session of the tag, the current session if not given
+   * @param options Deadline of the whole batch and id of the request
+   * @return responses in the same order, as ArrayBuffers (strings of hex data in hex result mode).
+   * On failure the promise is rejected with {index, message, responses} where responses are encoded like the results
+   */
+  transceiveTapBatch(frames: (ArrayBuffer | Uint8Array | string)[], sessionId?: string, options?: NfcRequestOptions): Promise<(ArrayBuffer | string)[]>;
 
   /**
    * Transeive raw data
    * @param data ArrayBuffer or string of hex data for transcieve
+   * @param options Android only. Deadline and id of the request
+   * @return response as an ArrayBuffer (string of hex data in hex result mode)
+   */
+  transceive(data: ArrayBuffer | string, options?: NfcRequestOptions): Promise<ArrayBuffer | string>;
+
+  /**
+   * Android only. Probe a session in the background and report its link state and quality.
+   * The status callback is called on each state transition and link quality change, until the tag is lost
+   * or the heartbeat is stopped.
+   */
+  startHeartbeat(
+    statusCallback: (status: NfcLinkStatus) => void,
+    errorCallback?: (error: string) => void,
+    options?: { interval?: number; sessionId?: string }
+  ): void;
+
+  /**
+   * Android only. Stop the heartbeat of a session
+   * @param sessionId session to stop monitoring, the current session if not given
    */
-  transceive(data: ArrayBuffer | string): Promise<string>;
+  stopHeartbeat(sessionId?: string): Promise<void>;
+
+  /**
+   * Android only. Cancel pending transceive requests
+   * @param requestId request to cancel (see NfcRequestOptions.requestId), all pending requests if not given
+   * @return number of requests cancelled
+   */
+  cancel(requestId?: string): Promise<number>;
 
   setTapDeviceDiscoveryEnabled(value: boolean): Promise<void>;
 
+  /**
+   * Android only, NFCTapDeviceCreation preference 'onDemand'. Pair with a discovered Tap.
+   * A 'nfc-tap-device' event is fired too
+   * @param sessionId UID of the discovered Tap, the last discovered Tap if not given
+   * @return Tap info
+   */
+  createTapDevice(sessionId?: string): Promise<any>;
+
+  /**
+   * Android only. Forget cached Tap sessions: next taps run NFC pairing and key exchange again
+   */
+  clearTapSessions(): Promise<void>;
+
+  /**
+   * Android only. Enable the reader mode: tags are given to readCallback instead of firing events.
+   * With options.tech, each discovered tag becomes the current session straight away (tag.session)
+   * @param flags NfcAdapter FLAG_READER_* flags
+   */
+  readerMode(
+    flags: number,
+    readCallback: (tag: any) => void,
+    errorCallback?: (error: string) => void,
+    options?: NfcReaderModeOptions
+  ): void;
+
+  /**
+   * Android only. Disable the reader mode enabled by readerMode or beginSessionFromTech
+   */
+  disableReaderMode(successCallback?: () => void, errorCallback?: (error: string) => void): void;
+
   /**
    * Begins a reading session for the given technology.
+   * On Android, reader mode polls this technology only and resolves with the first tag, connected.
    * @param tech String representing the technology of the tap to discover.
+   * @param alertMessage iOS only
+   * @param options Android only
    */
-  beginSessionFromTech(tech: string, alertMessage?: string): Promise<void>;
+  beginSessionFromTech(tech: string, alertMessage?: string, options?: NfcSessionFromTechOptions): Promise<void>;
 
   endSession(): Promise<void>;
 
   checkTapConnection(timeout: number): Promise<CheckTapConnectionResult>;
+
+  /**
+   * Android only. Native counters
+   */
+  getStats(): Promise<NfcStats>;
+
+  /**
+   * Android only. Subscribe to tag events. Without subscription every event is sent;
+   * once subscribed, only the events matching a subscription are built and sent
+   * @return subscription id
+   */
+  subscribe(options: NfcSubscriptionOptions): Promise<string>;
+
+  /**
+   * Android only. Remove a subscription
+   * @param subscriptionId subscription to remove, all subscriptions if not given
+   * @return number of subscriptions removed
+   */
+  unsubscribe(subscriptionId?: string): Promise<number>;
+
+  /**
+   * Android only. Payload of the events when there is no subscription. Overrides the NFCEventDetail preference
+   * @param detail 'full' (default), 'summary' (id, techTypes and handle for getTagDetails), 'tag' (id and techTypes) or 'id'
+   */
+  setEventDetail(detail: 'full' | 'summary' | 'tag' | 'id'): Promise<void>;
+
+  /**
+   * Android only. Details of the tag of a summary event, kept 60 s
+   * @param handle tag.handle of the summary event
+   * @param part 'ndef' (default) for the full tag JSON, 'message' for { ndefMessage }, 'capabilities' for { type, maxSize, isWritable, canMakeReadOnly }
+   */
+  getTagDetails(handle: string, part?: 'ndef' | 'message' | 'capabilities'): Promise<any>;
+
+  /**
+   * Android only. Events kept by the native part (see NFCEventRetention preference), in order.
+   * Each event has a seq property, also given to the fired events as event.seq
+   * @param seq sequence number of the last event received, 0 or not given for all events kept
+   */
+  getEventsSince(seq?: number): Promise<any[]>;
+
+  /**
+   * Android only. Filtering of repeated discoveries of the same tag (same UID).
+   * Overrides the NFCDiscoveryFilter and NFCDiscoveryWindow preferences
+   * @param mode 'none' to fire events for every discovery, 'debounce' to drop discoveries of a tag seen less than window ms ago,
+   * 'coalesce' to fire events at the end of the window for the last discovery of the tag
+   * @param window window in ms, default 1000
+   */
+  setDiscoveryFilter(mode: 'none' | 'debounce' | 'coalesce', window?: number): Promise<void>;
+
+  /**
+   * Android only. Encoding of tag ids and NDEF record fields in events: arrays of numbers (default) or base64 strings.
+   * Overrides the NFCNdefEncoding preference
+   */
+  setNdefEncoding(encoding: 'array' | 'base64'): Promise<void>;
+
+  /**
+   * Android only. Return transceive results as strings of hex data instead of ArrayBuffers.
+   * Overrides the EnableNFCHexResults preference
+   */
+  setHexResultEnabled(enabled: boolean): Promise<void>;
+
+  /**
+   * Android only. Open tag sessions (session id is the tag UID as hexadecimal string)
+   */
+  getSessions(): Promise<NfcSessions>;
+
+  /**
+   * Android only. Select the session used when no session id is given
+   */
+  selectSession(sessionId: string): Promise<void>;
+
+  /**
+   * Android only. Frame level trace
+   * @param format 'json' (default) or 'binary' (ArrayBuffer of 28 bytes records)
+   * @param clear true to clear the trace buffer once read
+   */
+  getTrace(format?: 'json', clear?: boolean): Promise<NfcTrace>;
+  getTrace(format: 'binary', clear?: boolean): Promise<ArrayBuffer>;
+}
+
+export interface NfcSessions {
+  current: string | null;
+  sessions: string[];
+}
+
+export interface NfcTrace {
+  capacity: number;
+  recordCount: number;
+  /**
+   * [sequence, timestamp (µs), duration (µs), requestLength, responseLength, type, opcode, flags, result]
+   */
+  records: [number, number, number, number, number, number, number, number, number][];
+}
+
+export interface NfcLinkStatus {
+  sessionId: string;
+  /**
+   * present: last probe succeeded. unstable: last probe failed. lost: a new connection is required.
+   * stopped: heartbeat stopped or session closed
+   */
+  state: 'present' | 'unstable' | 'lost' | 'stopped';
+  /**
+   * Link quality score from 0 (lost) to 100, from smoothed probe latency and failure rate
+   */
+  quality: number;
+  /**
+   * Smoothed probe latency in µs
+   */
+  latency: number;
+  /**
+   * Smoothed probe failure rate, from 0 to 1
+   */
+  failureRate: number;
+  probes: number;
+  failures: number;
+}
+
+export interface NfcRequestOptions {
+  /**
+   * Deadline of the request in ms, from the call. The request fails with a timeout error once it is over,
+   * even if it has not started yet
+   */
+  timeout?: number;
+  /**
+   * Id used to cancel the request with cancel()
+   */
+  requestId?: string;
+}
+
+export interface NfcStats {
+  /**
+   * MB_CTRL_DYN polling scheduler counters
+   */
+  polling: {
+    exchanges: number;
+    /**
+     * Exchanges without learned latency for the tag and request size
+     */
+    coldExchanges: number;
+    polls: number;
+    misses: number;
+    /**
+     * Responses received before the predicted window
+     */
+    earlyHits: number;
+    /**
+     * Responses received within the predicted window
+     */
+    predictedHits: number;
+    /**
+     * Responses received past the predicted window (backoff polling)
+     */
+    tailHits: number;
+    timeouts: number;
+    tagProfiles: number;
+  };
+  /**
+   * NFC executor counters. Wait times are in µs, from request to start of the operation
+   */
+  executor: {
+    activeLanes: number;
+    activeThreads: number;
+    queueDepth: number;
+    priorities: {
+      interactive: NfcExecutorPriorityStats;
+      background: NfcExecutorPriorityStats;
+      event: NfcExecutorPriorityStats;
+    };
+  };
+  /**
+   * Discovery filter counters. Suppressed discoveries are the debounced and coalesced ones
+   */
+  discovery: {
+    mode: 'none' | 'debounce' | 'coalesce';
+    window: number;
+    received: number;
+    delivered: number;
+    debounced: number;
+    coalesced: number;
+    suppressed: number;
+  };
+  /**
+   * Channel event buffer. Expired and overflowed are events dropped before the channel was attached
+   */
+  /**
+   * Subscriptions by id, events sent (matched) and not sent (filtered)
+   */
+  filter: {
+    subscriptions: { [id: string]: NfcSubscriptionOptions };
+    defaultDetail: 'full' | 'summary' | 'tag' | 'id';
+    matched: number;
+    filtered: number;
+  };
+  events: {
+    size: number;
+    pending: number;
+    lastSeq: number;
+    expired: number;
+    overflowed: number;
+  };
+}
+
+export interface NfcReaderModeOptions {
+  /**
+   * Technology of the session created for each discovered tag e.g. 'NfcV'. No session if not given
+   */
+  tech?: string;
+  /**
+   * Connect the session protocol on discovery, default true
+   */
+  connect?: boolean;
+  /**
+   * Check the Tap mailbox once connected, default false
+   */
+  checkMailbox?: boolean;
+  /**
+   * Tag timeout in ms
+   */
+  timeout?: number;
+  /**
+   * Delay between presence checks of the platform in ms
+   */
+  presenceCheckDelay?: number;
+  /**
+   * Do not check the tag for NDEF on discovery (FLAG_READER_SKIP_NDEF_CHECK)
+   */
+  skipNdefCheck?: boolean;
+  /**
+   * No platform sound on discovery (FLAG_READER_NO_PLATFORM_SOUNDS)
+   */
+  noPlatformSounds?: boolean;
+}
+
+export interface NfcSessionFromTechOptions {
+  /**
+   * Delay between presence checks of the platform in ms
+   */
+  presenceCheckDelay?: number;
+  /**
+   * Check the Tap mailbox once connected, default false
+   */
+  checkMailbox?: boolean;
+  /**
+   * Tag timeout in ms
+   */
+  timeout?: number;
+}
+
+/**
+ * Criteria of a subscription: all criteria given must match, a list matches if any of its values matches
+ */
+export interface NfcSubscriptionOptions {
+  /**
+   * Event types e.g. 'ndef', 'tag', 'ndef-formatable', 'nfc-tap-device'
+   */
+  types?: string[];
+  /**
+   * Tag technologies, full or simple names e.g. 'NfcV'
+   */
+  techs?: string[];
+  /**
+   * Start of the tag UID as hexadecimal string
+   */
+  uidPrefix?: string;
+  /**
+   * MIME types of NDEF records, with an optional wildcard at the end e.g. 'text/*'
+   */
+  mimeTypes?: string[];
+  /**
+   * Types of NDEF records e.g. 'U', 'T'
+   */
+  recordTypes?: string[];
+  /**
+   * Payload of the events: 'full' (default), 'summary' (id, technologies and handle for getTagDetails),
+   * 'tag' (id and technologies, no NDEF message) or 'id'
+   */
+  detail?: 'full' | 'summary' | 'tag' | 'id';
+}
+
+export interface NfcExecutorPriorityStats {
+  queueDepth: number;
+  started: number;
+  failed: number;
+  meanWaitTime: number;
+  maxWaitTime: number;
+  lastWaitTime: number;
 }
 
 export enum CheckTapConnectionResult {
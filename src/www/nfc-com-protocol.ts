@@ -1,7 +1,4 @@
-import {
-  bufferToHexString,
-  hexStringToBuffer,
-} from '@iotize/common/byte-converter';
+import { hexStringToBuffer } from '@iotize/common/byte-converter';
 import {
   ComProtocolConnectOptions,
   ComProtocolDisconnectOptions,
@@ -161,13 +158,21 @@ export class NFCComProtocol extends QueueComProtocol {
     return defer(async () => {
       return await this._sendQueue.add(async () => {
         try {
-          const response = await nfc.transceiveTap(bufferToHexString(data));
+          const response = await nfc.transceiveTap(
+            data.buffer.slice(
+              data.byteOffset,
+              data.byteOffset + data.byteLength
+            ) as ArrayBuffer
+          );
+          debug('NFC plugin response: ', response);
+          if (response instanceof ArrayBuffer) {
+            return new Uint8Array(response);
+          }
           if (typeof response != 'string') {
             throw NfcError.internalError(
-              `Internal error. Plugin should respond a hexadecimal string`
+              `Internal error. Plugin should respond an ArrayBuffer or a hexadecimal string`
             );
           }
-          debug('NFC plugin response: ', response);
           return hexStringToBuffer(response);
         } catch (errString) {
           if (typeof errString === 'string') {
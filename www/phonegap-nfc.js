@@ -434,12 +434,35 @@ var nfc = {
         // ]);
     },
 
+    // Android only, with the NFCTapDeviceCreation preference set to 'parallel' or 'onDemand'
+    // callback - called with the 'nfc-tap-device-discovered' event, before the Tap device is created
+    // errorCallback - called with the 'nfc-tap-device-error' event when the Tap device creation fails
+    addTapDeviceDiscoveredListener: function (callback, errorCallback) {
+        document.addEventListener("nfc-tap-device-discovered", callback, false);
+        if (errorCallback) {
+            document.addEventListener("nfc-tap-device-error", errorCallback, false);
+        }
+    },
+
+    // Android only, with the NFCTapDeviceCreation preference set to 'onDemand'
+    // sessionId - UID of the discovered Tap, the last discovered Tap if not given
+    // the Tap info is returned in the promise success, a 'nfc-tap-device' event is fired too
+    createTapDevice: function(sessionId) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, 'NfcPlugin', 'createTapDevice', sessionId ? [sessionId] : []);
+        });
+    },
+
     addNdefFormatableListener: function (callback, win, fail) {
         document.addEventListener("ndef-formatable", callback, false);
         cordova.exec(win, fail, "NfcPlugin", "registerNdefFormatable", []);
     },
 
+    // ndefMessage - array of NdefRecords, or encoded NDEF message as an ArrayBuffer or Uint8Array (Android only)
     write: function (ndefMessage, win, fail) {
+        if (ndefMessage instanceof Uint8Array) {
+            ndefMessage = ndefMessage.buffer.slice(ndefMessage.byteOffset, ndefMessage.byteOffset + ndefMessage.byteLength);
+        }
         cordova.exec(win, fail, "NfcPlugin", "writeTag", [ndefMessage]);
     },
 
@@ -495,15 +518,27 @@ var nfc = {
         });
     },
 
-    close: function() {
+    // sessionId - Android only: tag session to close, the current session if not given
+    close: function(sessionId) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, 'NfcPlugin', 'close', sessionId ? [sessionId] : []);
+        });
+    },
+
+    // Android only
+    // requestId - transceive request to cancel (see options.requestId), all pending requests if not given
+    // the number of requests cancelled is returned in the promise success
+    cancel: function(requestId) {
         return new Promise(function(resolve, reject) {
-            cordova.exec(resolve, reject, 'NfcPlugin', 'close', []);
+            cordova.exec(resolve, reject, 'NfcPlugin', 'cancel', requestId ? [requestId] : []);
         });
     },
 
     // data - ArrayBuffer or string of hex data for transcieve
     // the results of transcieve are returned in the promise success as an ArrayBuffer
-    transceiveTap: function(data) {
+    // sessionId - Android only: tag session to use, the current session if not given
+    // options - Android only: { timeout: deadline of the request in ms, requestId: id given to nfc.cancel }
+    transceiveTap: function(data, sessionId, options) {
         return new Promise(function(resolve, reject) {
 
             var buffer;
@@ -512,18 +547,76 @@ var nfc = {
             } else if (data instanceof ArrayBuffer) {
                 buffer = data;
             } else if (data instanceof Uint8Array) {
-                buffer = data.buffer;
+                buffer = data.buffer.slice(data.byteOffset, data.byteOffset + data.byteLength);
             } else {
                 reject("Expecting an ArrayBuffer or String");
             }
 
-            cordova.exec(resolve, reject, 'NfcPlugin', 'transceiveTap', [buffer]);
+            var args = [buffer, sessionId || null];
+            appendRequestOptions(args, options);
+            cordova.exec(resolve, reject, 'NfcPlugin', 'transceiveTap', args);
+        });
+    },
+
+    // Android only
+    // frames - array of ArrayBuffer or string of hex data, sent one after another to the Tap
+    // the responses are returned in the promise success, in the same order
+    // sessionId - tag session to use, the current session if not given
+    // options - { timeout: deadline of the whole batch in ms, requestId: id given to nfc.cancel }
+    transceiveTapBatch: function(frames, sessionId, options) {
+        return new Promise(function(resolve, reject) {
+            var buffers = [];
+            var lengths = [];
+            var totalLength = 0;
+            for (var i = 0; i < frames.length; i++) {
+                var data = frames[i];
+                var bytes;
+                if (typeof data === 'string') {
+                    bytes = new Uint8Array(util.hexStringToArrayBuffer(data));
+                } else if (data instanceof ArrayBuffer) {
+                    bytes = new Uint8Array(data);
+                } else if (data instanceof Uint8Array) {
+                    bytes = data;
+                } else {
+                    reject("Expecting an array of ArrayBuffer or String");
+                    return;
+                }
+                buffers.push(bytes);
+                lengths.push(bytes.length);
+                totalLength += bytes.length;
+            }
+            var buffer = new Uint8Array(totalLength);
+            var offset = 0;
+            buffers.forEach(function(bytes) {
+                buffer.set(bytes, offset);
+                offset += bytes.length;
+            });
+
+            var args = [buffer.buffer, lengths, sessionId || null];
+            appendRequestOptions(args, options);
+            // Binary responses are received as a multipart result: one argument per response
+            var onSuccess = function(responses) {
+                if (arguments.length === 1 && Array.isArray(responses)) {
+                    resolve(responses);
+                } else {
+                    resolve(Array.prototype.slice.call(arguments));
+                }
+            };
+            // Binary responses received before the failure follow the error
+            var onError = function(error) {
+                if (arguments.length > 1) {
+                    error.responses = Array.prototype.slice.call(arguments, 1);
+                }
+                reject(error);
+            };
+            cordova.exec(onSuccess, onError, 'NfcPlugin', 'transceiveTapBatch', args);
         });
     },
 
     // data - ArrayBuffer or string of hex data for transcieve
     // the results of transcieve are returned in the promise success as an ArrayBuffer
-    transceive: function(data) {
+    // options - Android only: { timeout: deadline of the request in ms, requestId: id given to nfc.cancel }
+    transceive: function(data, options) {
         return new Promise(function(resolve, reject) {
 
             var buffer;
@@ -532,12 +625,14 @@ var nfc = {
             } else if (data instanceof ArrayBuffer) {
                 buffer = data;
             } else if (data instanceof Uint8Array) {
-                buffer = data.buffer;
+                buffer = data.buffer.slice(data.byteOffset, data.byteOffset + data.byteLength);
             } else {
                 reject("Expecting an ArrayBuffer or String");
             }
 
-            cordova.exec(resolve, reject, 'NfcPlugin', 'transceive', [buffer]);
+            var args = [buffer];
+            appendRequestOptions(args, options);
+            cordova.exec(resolve, reject, 'NfcPlugin', 'transceive', args);
         });
     },
 
@@ -551,24 +646,38 @@ var nfc = {
     // FLAG_READER_NO_PLATFORM_SOUNDS: 0x100,
     
     // // Android NfcAdapter.enabledReaderMode
-    readerMode: function(flags, readCallback, errorCallback) {
-         cordova.exec(readCallback, errorCallback, 'NfcPlugin', 'readerMode', [flags]);
+    // options - Android only, session created for each discovered tag: tech (e.g. 'NfcV'), connect (default true),
+    //           checkMailbox (default false), timeout. readCallback is given the tag with its session {id, tech, connected, mailboxReady}
+    //           Platform options: presenceCheckDelay (ms), skipNdefCheck, noPlatformSounds
+    readerMode: function(flags, readCallback, errorCallback, options) {
+         cordova.exec(readCallback, errorCallback, 'NfcPlugin', 'readerMode', [flags, options || null]);
     },
 
     disableReaderMode: function(successCallback, errorCallback) {
          cordova.exec(successCallback, errorCallback, 'NfcPlugin', 'disableReaderMode', []);
     },
 
+    // Android only: forget cached Tap sessions, next taps pair again
+    clearTapSessions: function() {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, 'NfcPlugin', 'clearTapSessions', []);
+        });
+    },
+
     setTapDeviceDiscoveryEnabled: function(enabled) {
         return new Promise(function(resolve, reject) {
             cordova.exec(resolve, reject, 'NfcPlugin', 'setTapDeviceDiscoveryEnabled', [!!enabled]);
         });
     },
    
-    beginSessionFromTech: function(tech, alertMessage = undefined) {
+    // options - Android only: presenceCheckDelay (ms), checkMailbox, timeout
+    beginSessionFromTech: function(tech, alertMessage = undefined, options = undefined) {
         const args = [tech];
-        if (alertMessage) {
-            args.push(alertMessage);
+        if (alertMessage || options) {
+            args.push(alertMessage || null);
+        }
+        if (options) {
+            args.push(options);
         }
         return new Promise(function(resolve, reject) {
             cordova.exec(resolve, reject, 'NfcPlugin', 'beginSessionFromTech', args);
@@ -581,6 +690,23 @@ var nfc = {
         })    
     },
 
+    // Android only
+    // statusCallback - called with {sessionId, state, quality, latency, failureRate, probes, failures}
+    // on each state transition ('present', 'unstable', 'lost', 'stopped') and link quality change
+    // options - { interval: probe interval in ms (default 500), sessionId: session to monitor, the current session if not given }
+    startHeartbeat: function(statusCallback, errorCallback, options) {
+        options = options || {};
+        cordova.exec(statusCallback, errorCallback, 'NfcPlugin', 'startHeartbeat', [options.interval || 500, options.sessionId || null]);
+    },
+
+    // Android only
+    // sessionId - session to stop monitoring, the current session if not given
+    stopHeartbeat: function(sessionId) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, 'NfcPlugin', 'stopHeartbeat', sessionId ? [sessionId] : []);
+        });
+    },
+
     checkTapConnection: function(timeout) {
         return new Promise(function(resolve, reject) {
             if (cordova.platformId === 'android') {
@@ -591,6 +717,94 @@ var nfc = {
                 resolve();
             }
         })    
+    },
+
+    // Android only: native counters (MB_CTRL_DYN polling...)
+    getStats: function() {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, 'NfcPlugin', 'getStats', []);
+        });
+    },
+
+    // Android only: events sent by the native part, see README. Without subscription every event is sent
+    // options - types, techs, uidPrefix, mimeTypes, recordTypes, detail ('full', 'summary', 'tag' or 'id')
+    // the subscription id is returned in the promise success
+    subscribe: function(options) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, 'NfcPlugin', 'subscribe', [options || {}]);
+        });
+    },
+
+    // Android only: remove a subscription, all subscriptions if subscriptionId is not given
+    unsubscribe: function(subscriptionId) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, 'NfcPlugin', 'unsubscribe', [subscriptionId === undefined ? null : subscriptionId]);
+        });
+    },
+
+    // Android only: payload of the events when there is no subscription, 'full' (default), 'summary', 'tag' or 'id'
+    setEventDetail: function(detail) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, 'NfcPlugin', 'setEventDetail', [detail]);
+        });
+    },
+
+    // Android only: details of the tag of a summary event
+    // handle - tag.handle of the event
+    // part - 'ndef' (default) for the full tag, 'message' for the NDEF message, 'capabilities' for type, maxSize, isWritable and canMakeReadOnly
+    getTagDetails: function(handle, part) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, 'NfcPlugin', 'getTagDetails', [handle, part || null]);
+        });
+    },
+
+    // Android only: events still kept by the native part with a sequence number greater than seq
+    getEventsSince: function(seq) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, 'NfcPlugin', 'getEventsSince', [seq === undefined ? null : seq]);
+        });
+    },
+
+    // Android only: filtering of repeated discoveries of the same tag, 'none' (default), 'debounce' or 'coalesce'
+    setDiscoveryFilter: function(mode, window) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, 'NfcPlugin', 'setDiscoveryFilter', [mode, window === undefined ? null : window]);
+        });
+    },
+
+    // Android only: encoding of tag ids and NDEF records in events, 'array' (default) or 'base64'
+    setNdefEncoding: function(encoding) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, 'NfcPlugin', 'setNdefEncoding', [encoding]);
+        });
+    },
+
+    // Android only: return transceive results as hex strings instead of ArrayBuffers
+    setHexResultEnabled: function(enabled) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, 'NfcPlugin', 'setHexResultEnabled', [!!enabled]);
+        });
+    },
+
+    // Android only: ids of the open tag sessions and of the current session
+    getSessions: function() {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, 'NfcPlugin', 'getSessions', []);
+        });
+    },
+
+    // Android only: select the session used when no session id is given
+    selectSession: function(sessionId) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, 'NfcPlugin', 'selectSession', [sessionId]);
+        });
+    },
+
+    // Android only: frame level trace. format is 'json' (default) or 'binary'
+    getTrace: function(format, clear) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, 'NfcPlugin', 'getTrace', [format || 'json', !!clear]);
+        });
     }
     
 
@@ -758,6 +972,21 @@ var util = {
         return parts.join('');
     },
 
+    /**
+     * Convert a base64 string (compact NDEF encoding) to an ArrayBuffer.
+     *
+     * @param {string} base64 - base64 representation of bytes
+     * @return {ArrayBuffer} - The bytes in an ArrayBuffer.
+     */
+    base64ToArrayBuffer: function(base64) {
+        var binary = atob(base64);
+        var array = new Uint8Array(binary.length);
+        for (var i = 0; i < binary.length; i++) {
+            array[i] = binary.charCodeAt(i);
+        }
+        return array.buffer;
+    },
+
     /**
      * Convert a hex string to an ArrayBuffer.
      *
@@ -876,6 +1105,14 @@ var uriHelper = {
     }
 };
 
+// Android only: add the deadline and request id arguments of transceive requests
+function appendRequestOptions(args, options) {
+    if (options) {
+        args.push(options.timeout || 0);
+        args.push(options.requestId || null);
+    }
+}
+
 // added since WP8 must call a named function, also used by iOS
 // TODO consider switching NFC events from JS events to using the PG callbacks
 function fireNfcTagEvent(eventType, tagAsJson) {
@@ -909,14 +1146,19 @@ window.fireNfcTagEvent = fireNfcTagEvent;
 require('cordova/channel').onCordovaReady.subscribe(function() {
   require('cordova/exec')(success, null, 'NfcPlugin', 'channel', []);
   function success(message) {
-    if (!message.type) { 
+    if (Array.isArray(message.events)) {
+        // events fired before the channel was attached
+        message.events.forEach(success);
+    } else if (!message.type) { 
         console.log(message);
     } else {
         console.log("Received NFC data, firing '" + message.type + "' event");
         var e = document.createEvent('Events');
         e.initEvent(message.type);
+        e.seq = message.seq;
         e.tap = message.tap;
         e.tag = message.tag;
+        e.error = message.error;
         document.dispatchEvent(e);
     }
   }